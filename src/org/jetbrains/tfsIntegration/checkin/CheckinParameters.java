@@ -17,10 +17,12 @@
 package org.jetbrains.tfsIntegration.checkin;
 
 import com.intellij.mock.MockProgressIndicator;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.JDOMUtil;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.CheckinProjectPanel;
@@ -28,13 +30,16 @@ import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.actions.VcsContextFactory;
 import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
+import com.intellij.util.io.DigestUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Annotation;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.CheckinNoteFieldDefinition;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.CheckinWorkItemAction;
 import org.jdom.Element;
 import org.jdom.JDOMException;
+import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSConstants;
@@ -45,14 +50,35 @@ import org.jetbrains.tfsIntegration.core.tfs.*;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
 import org.jetbrains.tfsIntegration.exceptions.OperationFailedException;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.webservice.TfsRequestManager;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class CheckinParameters {
 
+  @NonNls private static final String LOADING_POOL_NAME = "TFS checkin definitions";
+  @NonNls private static final String EVALUATION_POOL_NAME = "TFS checkin policies";
+
+  // a policy that doesn't complete within this time is reported as a failure instead of blocking the commit
+  private static final long POLICY_EVALUATION_TIMEOUT_MS = Long.getLong("org.jetbrains.tfsIntegration.policyEvaluationTimeout", 30000);
+  private static final int POLICY_EVALUATION_THREADS = Runtime.getRuntime().availableProcessors();
+
+  private static final int MAX_EVALUATION_RESULTS = 100;
+  // failures reported by policies keyed by the hash of the policy configuration and evaluation context, guarded by itself
+  private static final Map<String, List<PolicyFailure>> ourEvaluationResults =
+    new LinkedHashMap<String, List<PolicyFailure>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, List<PolicyFailure>> eldest) {
+        return size() > MAX_EVALUATION_RESULTS;
+      }
+    };
+
   public static class CheckinNote {
     public @NotNull final String name;
     public final boolean required;
@@ -88,6 +114,216 @@ public class CheckinParameters {
     }
   }
 
+  /**
+   * Check in notes and policies definitions of a server as they are loaded. Values recently loaded are taken from the
+   * {@link org.jetbrains.tfsIntegration.core.tfs.VersionControlServer} cache, requests for others are collected to be executed concurrently.
+   */
+  private class ServerDefinitions {
+    private final ServerInfo myServer;
+    private final Collection<String> myTeamProjects;
+    private volatile List<CheckinNoteFieldDefinition> myCheckinNoteDefinitions;
+    public final Map<String, Collection<Annotation>> myOverrides = new ConcurrentHashMap<>();
+    public final Map<String, Collection<Annotation>> myTfsPolicies = new ConcurrentHashMap<>();
+    public final Map<String, Collection<Annotation>> myStatefulPolicies = new ConcurrentHashMap<>();
+    public final Map<String, TeamProjectData> myProject2Policies = new HashMap<>();
+    public boolean myTeamExplorerFound;
+    public boolean myTeampriseFound;
+
+    private ServerDefinitions(ServerInfo server, Collection<String> teamProjects) {
+      myServer = server;
+      myTeamProjects = teamProjects;
+      for (String teamProject : teamProjects) {
+        myProject2Policies.put(teamProject, new TeamProjectData());
+      }
+    }
+
+    public void collectCheckinNotes(List<TfsExecutionUtil.ConcurrentTask> requests) {
+      myCheckinNoteDefinitions = myServer.getVCS().getCachedCheckinNoteDefinition(myTeamProjects);
+      if (myCheckinNoteDefinitions == null) {
+        requests.add(() -> myCheckinNoteDefinitions =
+          myServer.getVCS().queryCheckinNoteDefinition(myTeamProjects, myPanel.getProject(), null));
+      }
+    }
+
+    public void collectAnnotations(final String annotationName,
+                                   final Map<String, Collection<Annotation>> result,
+                                   List<TfsExecutionUtil.ConcurrentTask> requests) {
+      for (final String teamProject : myTeamProjects) {
+        Collection<Annotation> cached = myServer.getVCS().getCachedAnnotations(annotationName, teamProject);
+        if (cached != null) {
+          result.put(teamProject, cached);
+        }
+        else {
+          requests.add(() -> result.put(teamProject, myServer.getVCS()
+            .queryAnnotations(annotationName, teamProject, myPanel.getProject(), null, false)));
+        }
+      }
+    }
+
+    public List<CheckinNote> getCheckinNotes() {
+      Map<String, CheckinNoteFieldDefinition> nameToDefinition = new HashMap<>();
+      // factorize different team projects definitions by name and sort them by display order field
+      for (CheckinNoteFieldDefinition definition : myCheckinNoteDefinitions) {
+        if (!nameToDefinition.containsKey(definition.getName()) || definition.getReq()) {
+          nameToDefinition.put(definition.getName(), definition);
+        }
+      }
+      List<CheckinNoteFieldDefinition> sortedDefinitions = new ArrayList<>(nameToDefinition.values());
+      Collections.sort(sortedDefinitions, (o1, o2) -> o1.get_do() - o2.get_do());
+
+      List<CheckinNote> checkinNotes = new ArrayList<>(sortedDefinitions.size());
+      for (CheckinNoteFieldDefinition checkinNote : sortedDefinitions) {
+        checkinNotes.add(new CheckinNote(checkinNote.getName(), checkinNote.getReq()));
+      }
+      return checkinNotes;
+    }
+
+    public void applyOverrides() throws JDOMException, IOException {
+      myTeamExplorerFound = TFSConfigurationManager.getInstance().getCheckinPoliciesCompatibility().teamExplorer;
+      myTeampriseFound = TFSConfigurationManager.getInstance().getCheckinPoliciesCompatibility().teamprise;
+      for (Annotation annotation : getAnnotations(myOverrides)) {
+        if (annotation.getValue() == null) continue;
+        String teamProject = VersionControlPath.getPathToProject(annotation.getItem());
+
+        TfsCheckinPoliciesCompatibility override = TfsCheckinPoliciesCompatibility.fromOverridesAnnotationValue(annotation.getValue());
+        myProject2Policies.get(teamProject).myCompatibility = override;
+        myTeamExplorerFound |= override.teamExplorer;
+        myTeampriseFound |= override.teamprise;
+      }
+    }
+
+    public void applyPolicies() throws PolicyParseException {
+      for (Annotation annotation : getAnnotations(myTfsPolicies)) {
+        if (annotation.getValue() == null) continue;
+        String teamProject = VersionControlPath.getPathToProject(annotation.getItem());
+
+        TeamProjectData teamProjectData = myProject2Policies.get(teamProject);
+        if (teamProjectData.myCompatibility.teamExplorer) {
+          for (PolicyDescriptor descriptor : StatelessPolicyParser.parseDescriptors(annotation.getValue())) {
+            if (descriptor.isEnabled()) {
+              teamProjectData.myPolicies.add(descriptor);
+            }
+          }
+        }
+      }
+
+      for (Annotation annotation : getAnnotations(myStatefulPolicies)) {
+        if (annotation.getValue() == null) continue;
+        String teamProject = VersionControlPath.getPathToProject(annotation.getItem());
+
+        TeamProjectData teamProjectData = myProject2Policies.get(teamProject);
+        if (teamProjectData.myCompatibility.teamprise) {
+          for (PolicyDescriptor descriptor : StatefulPolicyParser.parseDescriptors(annotation.getValue())) {
+            if (descriptor.isEnabled()) {
+              teamProjectData.myPolicies.add(descriptor);
+            }
+          }
+        }
+      }
+    }
+
+    // in the order of team projects
+    private Collection<Annotation> getAnnotations(Map<String, Collection<Annotation>> teamProjectToAnnotations) {
+      Collection<Annotation> result = new ArrayList<>();
+      for (String teamProject : myTeamProjects) {
+        Collection<Annotation> annotations = teamProjectToAnnotations.get(teamProject);
+        if (annotations != null) {
+          result.addAll(annotations);
+        }
+      }
+      return result;
+    }
+  }
+
+  private static class PolicyEvaluation {
+    private final PolicyBase myPolicy;
+    @Nullable private final PolicyDescriptor myDescriptor;
+    @Nullable private final PolicyContext myContext;
+    @Nullable private final String myKey;
+    // null until evaluated
+    @Nullable private volatile List<PolicyFailure> myFailures;
+
+    private PolicyEvaluation(PolicyBase policy,
+                             @Nullable PolicyDescriptor descriptor,
+                             @Nullable PolicyContext context,
+                             @Nullable String key) {
+      myPolicy = policy;
+      myDescriptor = descriptor;
+      myContext = context;
+      myKey = key;
+    }
+
+    private PolicyEvaluation(PolicyFailure failure) {
+      this(CheckinPoliciesManager.DUMMY_POLICY, null, null, null);
+      myFailures = Collections.singletonList(failure);
+    }
+
+    public void evaluate(ProgressIndicator pi) {
+      assert myDescriptor != null && myContext != null && myKey != null;
+      List<PolicyFailure> failures = new ArrayList<>();
+      if (myDescriptor instanceof StatefulPolicyDescriptor) {
+        try {
+          myPolicy.loadState((Element)((StatefulPolicyDescriptor)myDescriptor).getConfiguration().clone());
+        }
+        catch (ProcessCanceledException e) {
+          throw e;
+        }
+        catch (RuntimeException e) {
+          TFSVcs.LOG.warn(e);
+          String message = MessageFormat.format("Cannot load configuration of checkin policy ''{0}''", myPolicy.getPolicyType().getName());
+          String tooltip = MessageFormat.format("The following error occured while loading: {0}", e.getMessage());
+          failures.add(new PolicyFailure(CheckinPoliciesManager.DUMMY_POLICY, message, tooltip));
+          myFailures = failures;
+          return;
+        }
+      }
+
+      try {
+        ContainerUtil.addAll(failures, myPolicy.evaluate(myContext, pi));
+        synchronized (ourEvaluationResults) {
+          ourEvaluationResults.put(myKey, failures);
+        }
+      }
+      catch (ProcessCanceledException e) {
+        throw e;
+      }
+      catch (RuntimeException e) {
+        TFSVcs.LOG.warn(e);
+        String message = MessageFormat.format("Cannot evaluate checkin policy ''{0}''", myPolicy.getPolicyType().getName());
+        String tooltip = MessageFormat.format("The following error occured while evaluating: {0}", e.getMessage());
+        failures.add(new PolicyFailure(CheckinPoliciesManager.DUMMY_POLICY, message, tooltip));
+      }
+      myFailures = failures;
+    }
+  }
+
+  /**
+   * Evaluations that use the same policy instance, run one by one under an own progress indicator.
+   */
+  private static class PolicyTask implements Runnable {
+    private final PolicyBase myPolicy;
+    private final List<PolicyEvaluation> myEvaluations = new ArrayList<>();
+    private final ProgressIndicator myIndicator = new EmptyProgressIndicator();
+    // start time of the current evaluation, 0 if none is started yet. Time spent waiting for the policy is not counted
+    private volatile long myStarted;
+
+    private PolicyTask(PolicyBase policy) {
+      myPolicy = policy;
+    }
+
+    @Override
+    public void run() {
+      // evaluation that timed out last time may still be running
+      synchronized (myPolicy) {
+        for (PolicyEvaluation evaluation : myEvaluations) {
+          myIndicator.checkCanceled();
+          myStarted = System.currentTimeMillis();
+          evaluation.evaluate(myIndicator);
+        }
+      }
+    }
+  }
+
   private final CheckinProjectPanel myPanel;
   private Map<ServerInfo, ServerData> myData;
   private boolean myPoliciesEvaluated;
@@ -150,110 +386,53 @@ public class CheckinParameters {
           List<ServerInfo> sortedServers = new ArrayList<>(serverToProjects.keySet());
           Collections.sort(sortedServers, (o1, o2) -> o1.getPresentableUri().compareTo(o2.getPresentableUri()));
 
-          Map<ServerInfo, ServerData> data = new LinkedHashMap<>();
-          StringBuilder policiesLoadError = new StringBuilder();
+          // definitions not cached by the servers are requested concurrently, overrides first since they enable policies
+          Map<ServerInfo, ServerDefinitions> definitions = new LinkedHashMap<>();
+          List<TfsExecutionUtil.ConcurrentTask> requests = new ArrayList<>();
           for (ServerInfo server : sortedServers) {
-            final Collection<String> teamProjects = serverToProjects.get(server);
-            final List<CheckinNoteFieldDefinition> checkinNoteDefinitions =
-              server.getVCS().queryCheckinNoteDefinition(teamProjects, myPanel.getProject(), null);
-            pi.checkCanceled();
-            Map<String, CheckinNoteFieldDefinition> nameToDefinition = new HashMap<>();
-            // factorize different team projects definitions by name and sort them by display order field
-            for (CheckinNoteFieldDefinition definition : checkinNoteDefinitions) {
-              if (!nameToDefinition.containsKey(definition.getName()) || definition.getReq()) {
-                nameToDefinition.put(definition.getName(), definition);
-              }
-            }
-            List<CheckinNoteFieldDefinition> sortedDefinitions = new ArrayList<>(nameToDefinition.values());
-            Collections.sort(sortedDefinitions, (o1, o2) -> o1.get_do() - o2.get_do());
-
-            List<CheckinNote> checkinNotes = new ArrayList<>(sortedDefinitions.size());
-            for (CheckinNoteFieldDefinition checkinNote : sortedDefinitions) {
-              checkinNotes.add(new CheckinNote(checkinNote.getName(), checkinNote.getReq()));
-            }
-
-            Map<String, TeamProjectData> project2policies = new HashMap<>();
-            for (String teamProject : teamProjects) {
-              project2policies.put(teamProject, new TeamProjectData());
-            }
+            ServerDefinitions serverDefinitions = new ServerDefinitions(server, serverToProjects.get(server));
+            serverDefinitions.collectCheckinNotes(requests);
+            serverDefinitions.collectAnnotations(TFSConstants.OVERRRIDES_ANNOTATION, serverDefinitions.myOverrides, requests);
+            definitions.put(server, serverDefinitions);
+          }
+          TfsExecutionUtil.executeConcurrently(LOADING_POOL_NAME, TfsRequestManager.getParallelism(sortedServers.size()), requests);
+          pi.checkCanceled();
 
+          StringBuilder policiesLoadError = new StringBuilder();
+          requests = new ArrayList<>();
+          for (ServerDefinitions serverDefinitions : definitions.values()) {
             try {
-              Collection<Annotation> overridesAnnotations = new ArrayList<>();
-              for (String teamProjectPath : teamProjects) {
-                overridesAnnotations.addAll(
-                  server.getVCS().queryAnnotations(TFSConstants.OVERRRIDES_ANNOTATION, teamProjectPath, myPanel.getProject(), null, false));
-              }
-
-              boolean teamExplorerFound = TFSConfigurationManager.getInstance().getCheckinPoliciesCompatibility().teamExplorer;
-              boolean teampriseFound = TFSConfigurationManager.getInstance().getCheckinPoliciesCompatibility().teamprise;
-              for (Annotation annotation : overridesAnnotations) {
-                if (annotation.getValue() == null) continue;
-                String teamProject = VersionControlPath.getPathToProject(annotation.getItem());
-
-                TfsCheckinPoliciesCompatibility override =
-                  TfsCheckinPoliciesCompatibility.fromOverridesAnnotationValue(annotation.getValue());
-                project2policies.get(teamProject).myCompatibility = override;
-                teamExplorerFound |= override.teamExplorer;
-                teampriseFound |= override.teamprise;
+              serverDefinitions.applyOverrides();
+              if (serverDefinitions.myTeamExplorerFound) {
+                serverDefinitions
+                  .collectAnnotations(TFSConstants.TFS_CHECKIN_POLICIES_ANNOTATION, serverDefinitions.myTfsPolicies, requests);
               }
-
-              if (teamExplorerFound) {
-                Collection<Annotation> annotations = new ArrayList<>();
-                for (String teamProjectPath : teamProjects) {
-                  annotations.addAll(server.getVCS()
-                                       .queryAnnotations(TFSConstants.TFS_CHECKIN_POLICIES_ANNOTATION, teamProjectPath,
-                                                         myPanel.getProject(), null, false));
-                }
-
-                for (Annotation annotation : annotations) {
-                  if (annotation.getValue() == null) continue;
-                  String teamProject = VersionControlPath.getPathToProject(annotation.getItem());
-
-                  TeamProjectData teamProjectData = project2policies.get(teamProject);
-                  if (teamProjectData.myCompatibility.teamExplorer) {
-                    for (PolicyDescriptor descriptor : StatelessPolicyParser.parseDescriptors(annotation.getValue())) {
-                      if (descriptor.isEnabled()) {
-                        teamProjectData.myPolicies.add(descriptor);
-                      }
-                    }
-                  }
-                }
-              }
-
-              if (teampriseFound) {
-                Collection<Annotation> annotations = new ArrayList<>();
-                for (String teamProjectPath : teamProjects) {
-                  annotations.addAll(server.getVCS()
-                                       .queryAnnotations(TFSConstants.STATEFUL_CHECKIN_POLICIES_ANNOTATION, teamProjectPath,
-                                                         myPanel.getProject(), null, false));
-                }
-                for (Annotation annotation : annotations) {
-                  if (annotation.getValue() == null) continue;
-                  String teamProject = VersionControlPath.getPathToProject(annotation.getItem());
-
-                  TeamProjectData teamProjectData = project2policies.get(teamProject);
-                  if (teamProjectData.myCompatibility.teamprise) {
-                    for (PolicyDescriptor descriptor : StatefulPolicyParser.parseDescriptors(annotation.getValue())) {
-                      if (descriptor.isEnabled()) {
-                        teamProjectData.myPolicies.add(descriptor);
-                      }
-                    }
-                  }
-                }
+              if (serverDefinitions.myTeampriseFound) {
+                serverDefinitions
+                  .collectAnnotations(TFSConstants.STATEFUL_CHECKIN_POLICIES_ANNOTATION, serverDefinitions.myStatefulPolicies, requests);
               }
             }
-            catch (PolicyParseException e) {
-              policiesLoadError.append(e.getMessage());
-            }
             catch (JDOMException e) {
               policiesLoadError.append(e.getMessage());
             }
             catch (IOException e) {
               policiesLoadError.append(e.getMessage());
             }
-            pi.checkCanceled();
+          }
+          TfsExecutionUtil.executeConcurrently(LOADING_POOL_NAME, TfsRequestManager.getParallelism(sortedServers.size()), requests);
+          pi.checkCanceled();
 
-            data.put(server, new ServerData(checkinNotes, new WorkItemsCheckinParameters(), serverToFiles.get(server), project2policies));
+          Map<ServerInfo, ServerData> data = new LinkedHashMap<>();
+          for (Map.Entry<ServerInfo, ServerDefinitions> entry : definitions.entrySet()) {
+            ServerDefinitions serverDefinitions = entry.getValue();
+            try {
+              serverDefinitions.applyPolicies();
+            }
+            catch (PolicyParseException e) {
+              policiesLoadError.append(e.getMessage());
+            }
+            data.put(entry.getKey(), new ServerData(serverDefinitions.getCheckinNotes(), new WorkItemsCheckinParameters(),
+                                                    serverToFiles.get(entry.getKey()), serverDefinitions.myProject2Policies));
           }
 
           myPoliciesLoadError = policiesLoadError.length() > 0 ? policiesLoadError.toString() : null;
@@ -283,10 +462,15 @@ public class CheckinParameters {
   }
 
   public void evaluatePolicies(ProgressIndicator pi) {
+    // failures of every server in the order of policy descriptors, evaluations are filled in as they complete
+    Map<ServerInfo, List<PolicyEvaluation>> serverEvaluations = new LinkedHashMap<>();
+    // the same policy instance is used for all the descriptors of its type, so they are evaluated one by one
+    Map<PolicyBase, PolicyTask> tasks = new LinkedHashMap<>();
     for (final Map.Entry<ServerInfo, ServerData> entry : myData.entrySet()) {
       PolicyContext context = createPolicyContext(entry.getKey());
+      String contextKey = getContextKey(myPanel.getProject(), entry.getKey(), context);
 
-      List<PolicyFailure> allFailures = new ArrayList<>();
+      List<PolicyEvaluation> evaluations = new ArrayList<>();
       for (Map.Entry<String, TeamProjectData> teamProjectDataEntry : entry.getValue().myPolicies.entrySet()) {
         for (PolicyDescriptor descriptor : teamProjectDataEntry.getValue().myPolicies) {
           PolicyBase policy;
@@ -296,57 +480,164 @@ public class CheckinParameters {
           catch (DuplicatePolicyIdException e) {
             final String tooltip = MessageFormat
               .format("Several checkin policies with the same id found: ''{0}''.\nPlease review your extensions.", e.getDuplicateId());
-            allFailures.add(new PolicyFailure(CheckinPoliciesManager.DUMMY_POLICY, "Duplicate checkin policy id", tooltip));
+            PolicyFailure failure = new PolicyFailure(CheckinPoliciesManager.DUMMY_POLICY, "Duplicate checkin policy id", tooltip);
+            evaluations.add(new PolicyEvaluation(failure));
             break;
           }
 
           if (policy == null) {
             if (teamProjectDataEntry.getValue().myCompatibility.nonInstalled) {
-              allFailures.add(new NotInstalledPolicyFailure(descriptor.getType(), !(descriptor instanceof StatefulPolicyDescriptor)));
+              boolean stateless = !(descriptor instanceof StatefulPolicyDescriptor);
+              evaluations.add(new PolicyEvaluation(new NotInstalledPolicyFailure(descriptor.getType(), stateless)));
             }
             continue;
           }
 
-          pi.setText(MessageFormat.format("Evaluating checkin policy: {0}", policy.getPolicyType().getName()));
-          pi.setText2("");
-          if (descriptor instanceof StatefulPolicyDescriptor) {
-            try {
-              policy.loadState((Element)((StatefulPolicyDescriptor)descriptor).getConfiguration().clone());
-            }
-            catch (ProcessCanceledException e) {
-              throw e;
-            }
-            catch (RuntimeException e) {
-              TFSVcs.LOG.warn(e);
-              String message =
-                MessageFormat.format("Cannot load configuration of checkin policy ''{0}''", policy.getPolicyType().getName());
-              String tooltip = MessageFormat.format("The following error occured while loading: {0}", e.getMessage());
-              allFailures.add(new PolicyFailure(CheckinPoliciesManager.DUMMY_POLICY, message, tooltip));
-              continue;
-            }
-          }
-
-          try {
-            final PolicyFailure[] failures = policy.evaluate(context, pi);
-            ContainerUtil.addAll(allFailures, failures);
+          PolicyEvaluation evaluation = new PolicyEvaluation(policy, descriptor, context, getEvaluationKey(contextKey, descriptor));
+          evaluations.add(evaluation);
+          List<PolicyFailure> cached;
+          synchronized (ourEvaluationResults) {
+            cached = ourEvaluationResults.get(evaluation.myKey);
           }
-          catch (ProcessCanceledException e) {
-            throw e;
+          if (cached != null) {
+            evaluation.myFailures = cached;
+            continue;
           }
-          catch (RuntimeException e) {
-            TFSVcs.LOG.warn(e);
-            String message = MessageFormat.format("Cannot evaluate checkin policy ''{0}''", policy.getPolicyType().getName());
-            String tooltip = MessageFormat.format("The following error occured while evaluating: {0}", e.getMessage());
-            allFailures.add(new PolicyFailure(CheckinPoliciesManager.DUMMY_POLICY, message, tooltip));
+          PolicyTask task = tasks.get(policy);
+          if (task == null) {
+            task = new PolicyTask(policy);
+            tasks.put(policy, task);
           }
-          pi.checkCanceled();
+          task.myEvaluations.add(evaluation);
         }
       }
-      entry.getValue().myPolicyFailures = allFailures;
+      serverEvaluations.put(entry.getKey(), evaluations);
+    }
+
+    runPolicyTasks(tasks.values(), pi);
+
+    for (Map.Entry<ServerInfo, List<PolicyEvaluation>> entry : serverEvaluations.entrySet()) {
+      List<PolicyFailure> allFailures = new ArrayList<>();
+      for (PolicyEvaluation evaluation : entry.getValue()) {
+        if (evaluation.myFailures != null) {
+          allFailures.addAll(evaluation.myFailures);
+        }
+        else {
+          String message =
+            MessageFormat.format("Checkin policy ''{0}'' was not evaluated in time", evaluation.myPolicy.getPolicyType().getName());
+          String tooltip = MessageFormat
+            .format("Evaluation did not complete within {0} seconds", TimeUnit.MILLISECONDS.toSeconds(POLICY_EVALUATION_TIMEOUT_MS));
+          allFailures.add(new PolicyFailure(CheckinPoliciesManager.DUMMY_POLICY, message, tooltip));
+        }
+      }
+      myData.get(entry.getKey()).myPolicyFailures = allFailures;
     }
     myPoliciesEvaluated = true;
   }
 
+  /**
+   * Runs policy tasks on pooled threads, reports progress as they complete. A task that doesn't complete an evaluation within
+   * {@link #POLICY_EVALUATION_TIMEOUT_MS} after it got hold of the policy is cancelled via its own progress indicator and its
+   * remaining evaluations are skipped.
+   */
+  private static void runPolicyTasks(Collection<PolicyTask> tasks, ProgressIndicator pi) {
+    if (tasks.isEmpty()) {
+      return;
+    }
+    ExecutorService executor =
+      AppExecutorUtil.createBoundedApplicationPoolExecutor(EVALUATION_POOL_NAME, Math.min(tasks.size(), POLICY_EVALUATION_THREADS));
+    BlockingQueue<PolicyTask> completed = new LinkedBlockingQueue<>();
+    for (PolicyTask task : tasks) {
+      executor.execute(() -> {
+        try {
+          ProgressManager.getInstance().executeProcessUnderProgress(task, task.myIndicator);
+        }
+        catch (ProcessCanceledException ignored) {
+          // timed out or the whole evaluation was cancelled
+        }
+        finally {
+          completed.add(task);
+        }
+      });
+    }
+
+    Set<PolicyTask> running = new HashSet<>(tasks);
+    try {
+      while (!running.isEmpty()) {
+        pi.checkCanceled();
+
+        PolicyTask task = completed.poll(100, TimeUnit.MILLISECONDS);
+        if (task != null && running.remove(task)) {
+          pi.setText2(task.myPolicy.getPolicyType().getName());
+          pi.setFraction(1 - (double)running.size() / tasks.size());
+        }
+
+        long now = System.currentTimeMillis();
+        for (Iterator<PolicyTask> i = running.iterator(); i.hasNext(); ) {
+          PolicyTask runningTask = i.next();
+          long started = runningTask.myStarted;
+          if (started != 0 && now - started > POLICY_EVALUATION_TIMEOUT_MS) {
+            TFSVcs.LOG.warn("Checkin policy evaluation timed out: " + runningTask.myPolicy.getPolicyType().getId());
+            runningTask.myIndicator.cancel();
+            i.remove();
+          }
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    finally {
+      // tasks not waited for any more should stop as soon as they check their indicators
+      for (PolicyTask task : running) {
+        task.myIndicator.cancel();
+      }
+      executor.shutdown();
+    }
+  }
+
+  private static String getContextKey(Project project, ServerInfo server, PolicyContext context) {
+    MessageDigest digest = DigestUtil.md5();
+    // results are shared by all the projects, and policies may check project settings
+    update(digest, project.getLocationHash());
+    update(digest, server.getUri().toString());
+    update(digest, StringUtil.notNullize(context.getCommitMessage()));
+    List<String> files = new ArrayList<>(context.getFiles().size());
+    for (FilePath file : context.getFiles()) {
+      File ioFile = file.getIOFile();
+      files.add(file.getPath() + ":" + ioFile.lastModified() + ":" + ioFile.length());
+    }
+    Collections.sort(files);
+    for (String file : files) {
+      update(digest, file);
+    }
+    List<String> workItems = new ArrayList<>(context.getWorkItems().size());
+    for (Map.Entry<WorkItem, WorkItemAction> entry : context.getWorkItems().entrySet()) {
+      workItems.add(entry.getKey().getId() + ":" + entry.getKey().getRevision() + ":" + entry.getValue());
+    }
+    Collections.sort(workItems);
+    for (String workItem : workItems) {
+      update(digest, workItem);
+    }
+    return StringUtil.toHexString(digest.digest());
+  }
+
+  private static String getEvaluationKey(String contextKey, PolicyDescriptor descriptor) {
+    MessageDigest digest = DigestUtil.md5();
+    update(digest, contextKey);
+    update(digest, descriptor.getType().getId());
+    if (descriptor instanceof StatefulPolicyDescriptor) {
+      update(digest, JDOMUtil.writeElement(((StatefulPolicyDescriptor)descriptor).getConfiguration()));
+    }
+    return StringUtil.toHexString(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte)0);
+  }
+
   public PolicyContext createPolicyContext(final ServerInfo server) {
     final ServerData serverData = myData.get(server);
     return new PolicyContext() {
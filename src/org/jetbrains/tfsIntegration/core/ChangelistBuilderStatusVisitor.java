@@ -46,7 +46,7 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
   @Override
   public void unversioned(final @NotNull FilePath localPath, final boolean localItemExists, final @NotNull ServerStatus serverStatus) {
     if (localItemExists) {
-      myChangelistBuilder.processUnversionedFile(localPath);
+      processUnversionedFile(localPath);
     }
   }
 
@@ -56,10 +56,10 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
     if (localItemExists) {
       TFSContentRevision baseRevision =
         TFSContentRevision.create(myProject, myWorkspace, localPath, serverStatus.localVer, serverStatus.itemId);
-      myChangelistBuilder.processChange(new Change(baseRevision, CurrentContentRevision.create(localPath)), TFSVcs.getKey());
+      processChange(new Change(baseRevision, CurrentContentRevision.create(localPath)));
     }
     else {
-      myChangelistBuilder.processLocallyDeletedFile(localPath);
+      processLocallyDeletedFile(localPath);
     }
   }
 
@@ -68,10 +68,10 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
                                    final boolean localItemExists,
                                    final @NotNull ServerStatus serverStatus) {
     if (localItemExists) {
-      myChangelistBuilder.processChange(new Change(null, new CurrentContentRevision(localPath)), TFSVcs.getKey());
+      processChange(new Change(null, new CurrentContentRevision(localPath)));
     }
     else {
-      myChangelistBuilder.processLocallyDeletedFile(localPath);
+      processLocallyDeletedFile(localPath);
     }
   }
 
@@ -81,7 +81,7 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
                                    final @NotNull ServerStatus serverStatus) {
     TFSContentRevision baseRevision =
       TFSContentRevision.create(myProject, myWorkspace, localPath, serverStatus.localVer, serverStatus.itemId);
-    myChangelistBuilder.processChange(new Change(baseRevision, null), TFSVcs.getKey());
+    processChange(new Change(baseRevision, null));
   }
 
   @Override
@@ -92,7 +92,7 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
   @Override
   public void deleted(final @NotNull FilePath localPath, final boolean localItemExists, final @NotNull ServerStatus serverStatus) {
     if (localItemExists) {
-      myChangelistBuilder.processUnversionedFile(localPath);
+      processUnversionedFile(localPath);
     }
   }
 
@@ -100,11 +100,11 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
   public void upToDate(final @NotNull FilePath localPath, final boolean localItemExists, final @NotNull ServerStatus serverStatus) {
     if (localItemExists) {
       if (!myWorkspace.isLocal() && TfsFileUtil.isFileWritable(localPath)) {
-        myChangelistBuilder.processModifiedWithoutCheckout(localPath.getVirtualFile());
+        processModifiedWithoutCheckout(localPath);
       }
     }
     else {
-      myChangelistBuilder.processLocallyDeletedFile(localPath);
+      processLocallyDeletedFile(localPath);
     }
   }
 
@@ -119,10 +119,10 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
       //noinspection ConstantConditions
       TFSContentRevision before = TFSContentRevision.create(myProject, myWorkspace, beforePath, serverStatus.localVer, serverStatus.itemId);
       ContentRevision after = CurrentContentRevision.create(localPath);
-      myChangelistBuilder.processChange(new Change(before, after), TFSVcs.getKey());
+      processChange(new Change(before, after));
     }
     else {
-      myChangelistBuilder.processLocallyDeletedFile(localPath);
+      processLocallyDeletedFile(localPath);
     }
   }
 
@@ -137,10 +137,10 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
       //noinspection ConstantConditions
       TFSContentRevision before = TFSContentRevision.create(myProject, myWorkspace, beforePath, serverStatus.localVer, serverStatus.itemId);
       ContentRevision after = CurrentContentRevision.create(localPath);
-      myChangelistBuilder.processChange(new Change(before, after), TFSVcs.getKey());
+      processChange(new Change(before, after));
     }
     else {
-      myChangelistBuilder.processLocallyDeletedFile(localPath);
+      processLocallyDeletedFile(localPath);
     }
   }
 
@@ -150,4 +150,29 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
     checkedOutForEdit(localPath, localItemExists, serverStatus);
   }
 
+  // the same builder is shared by visitors of workspaces that may be processed concurrently
+
+  private void processChange(Change change) {
+    synchronized (myChangelistBuilder) {
+      myChangelistBuilder.processChange(change, TFSVcs.getKey());
+    }
+  }
+
+  private void processUnversionedFile(FilePath localPath) {
+    synchronized (myChangelistBuilder) {
+      myChangelistBuilder.processUnversionedFile(localPath);
+    }
+  }
+
+  private void processLocallyDeletedFile(FilePath localPath) {
+    synchronized (myChangelistBuilder) {
+      myChangelistBuilder.processLocallyDeletedFile(localPath);
+    }
+  }
+
+  private void processModifiedWithoutCheckout(FilePath localPath) {
+    synchronized (myChangelistBuilder) {
+      myChangelistBuilder.processModifiedWithoutCheckout(localPath.getVirtualFile());
+    }
+  }
 }
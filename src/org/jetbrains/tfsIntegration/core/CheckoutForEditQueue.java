@@ -0,0 +1,139 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
+import org.jetbrains.tfsIntegration.core.tfs.TfsUtil;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks out files for edit in background. Files are made writable right away, and files edited within {@link #DELAY_MS}
+ * are checked out together with one request per workspace. Files that could not be checked out are left writable since
+ * the editor may hold unsaved changes, and the failure is reported. Files still queued when the VCS is deactivated are
+ * checked out on a pooled thread, or made read-only again if the project is disposed by then.
+ */
+class CheckoutForEditQueue {
+  private static final Logger LOG = Logger.getInstance(CheckoutForEditQueue.class.getName());
+
+  private static final long DELAY_MS = Long.getLong("org.jetbrains.tfsIntegration.checkoutDelay", 300);
+
+  private final Project myProject;
+  // guarded by this
+  private final Set<VirtualFile> myQueue = new LinkedHashSet<>();
+  private boolean myScheduled;
+
+  CheckoutForEditQueue(Project project) {
+    myProject = project;
+  }
+
+  void add(VirtualFile[] files) throws VcsException {
+    try {
+      TfsFileUtil.setReadOnly(Arrays.asList(files), false);
+    }
+    catch (IOException e) {
+      throw new VcsException(e);
+    }
+
+    synchronized (this) {
+      Collections.addAll(myQueue, files);
+      if (!myScheduled) {
+        myScheduled = true;
+        // the scheduler thread is not for long running tasks
+        AppExecutorUtil.getAppScheduledExecutorService()
+          .schedule(this::flushInBackground, DELAY_MS, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /**
+   * Checks out the queued files on a pooled thread, the caller doesn't wait for the server.
+   */
+  void flushInBackground() {
+    ApplicationManager.getApplication().executeOnPooledThread(this::flush);
+  }
+
+  private void flush() {
+    final List<VirtualFile> files;
+    synchronized (this) {
+      files = new ArrayList<>(myQueue);
+      myQueue.clear();
+      myScheduled = false;
+    }
+    if (files.isEmpty()) {
+      return;
+    }
+    if (myProject.isDisposed()) {
+      // no one to check them out, don't leave them writable with no pending change
+      files.removeIf(file -> !file.isValid());
+      try {
+        TfsFileUtil.setReadOnly(files, true);
+      }
+      catch (IOException e) {
+        LOG.warn(e);
+      }
+      return;
+    }
+
+    List<VcsException> errors = new ArrayList<>();
+    Collection<VirtualFile> checkedOut = new HashSet<>();
+    try {
+      TFSEditFileProvider.checkoutForEdit(myProject, files, checkedOut, errors);
+    }
+    catch (VcsException e) {
+      errors.add(e);
+    }
+    catch (RuntimeException e) {
+      LOG.warn(e);
+      errors.add(new VcsException(e));
+    }
+
+    List<VirtualFile> failed = new ArrayList<>(files);
+    failed.removeAll(checkedOut);
+    failed.removeIf(file -> !file.isValid());
+    if (!failed.isEmpty()) {
+      TfsFileUtil.markDirty(myProject, Collections.emptyList(), TfsFileUtil.getFilePaths(failed));
+    }
+    if ((!errors.isEmpty() || !failed.isEmpty()) && !myProject.isDisposed()) {
+      notifyFailed(failed, errors);
+    }
+  }
+
+  private void notifyFailed(List<VirtualFile> failed, List<VcsException> errors) {
+    StringBuilder message = new StringBuilder();
+    if (!failed.isEmpty()) {
+      message.append(TFSBundle.message("checkout.failed.files.left.writable")).append("<br>");
+      for (VirtualFile file : failed) {
+        message.append(StringUtil.escapeXmlEntities(file.getPresentableUrl())).append("<br>");
+      }
+    }
+    for (VcsException error : errors) {
+      message.append(StringUtil.escapeXmlEntities(StringUtil.notNullize(error.getMessage()))).append("<br>");
+    }
+    TfsUtil.showBalloon(myProject, MessageType.ERROR, message.toString());
+  }
+}
@@ -19,6 +19,7 @@ package org.jetbrains.tfsIntegration.core;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
@@ -27,11 +28,15 @@ import com.intellij.openapi.vcs.annotate.FileAnnotation;
 import com.intellij.openapi.vcs.history.VcsFileRevision;
 import com.intellij.openapi.vcs.history.VcsRevisionNumber;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ExtendedItem;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.revision.TFSAnnotationCache;
 import org.jetbrains.tfsIntegration.core.tfs.AnnotationBuilder;
+import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
 import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
+import org.jetbrains.tfsIntegration.core.tfs.TfsRevisionNumber;
 import org.jetbrains.tfsIntegration.core.tfs.WorkspaceInfo;
 import org.jetbrains.tfsIntegration.core.tfs.Workstation;
 import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
@@ -40,15 +45,92 @@ import org.jetbrains.tfsIntegration.core.tfs.version.WorkspaceVersionSpec;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import java.text.MessageFormat;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 public class TFSAnnotationProvider implements AnnotationProvider {
 
   private static final int CURRENT_CHANGESET = 0;
 
+  // revisions loaded ahead of the one being diffed, the build may stop early so only the next one by default
+  private static final int PREFETCH_COUNT = Integer.getInteger("org.jetbrains.tfsIntegration.annotationPrefetch", 1);
+
+  /**
+   * Loads contents of the next revisions in background while the current one is being diffed, the window moves forward
+   * with the requested revision.
+   * Revisions are expected to be requested in the order of the list, {@link #dispose()} drops what was not requested.
+   */
+  private static class PrefetchingContentProvider implements AnnotationBuilder.ContentProvider {
+    private final List<TFSFileRevision> myRevisions;
+    private final AnnotationBuilder.ContentProvider myDelegate;
+    private final ExecutorService myExecutor;
+    @Nullable private final ProgressIndicator myProgressIndicator;
+
+    // accessed from the annotating thread only
+    private final Map<TFSFileRevision, Integer> myIndices = new IdentityHashMap<>();
+    private final Map<TFSFileRevision, Future<Pair<String, VcsException>>> myPrefetched = new IdentityHashMap<>();
+    private int myNextToPrefetch = 0;
+
+    PrefetchingContentProvider(List<TFSFileRevision> revisions, AnnotationBuilder.ContentProvider delegate) {
+      myRevisions = revisions;
+      myDelegate = delegate;
+      myExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS annotation prefetch", PREFETCH_COUNT);
+      myProgressIndicator = ProgressManager.getInstance().getProgressIndicator();
+      for (int i = 0; i < revisions.size(); i++) {
+        myIndices.put(revisions.get(i), i);
+      }
+    }
+
+    @Override
+    public String getContent(final TFSFileRevision revision) throws VcsException {
+      Integer index = myIndices.get(revision);
+      if (index != null) {
+        prefetch(index + 1, index + PREFETCH_COUNT);
+      }
+
+      Future<Pair<String, VcsException>> future = myPrefetched.remove(revision);
+      if (future == null) {
+        return myDelegate.getContent(revision);
+      }
+      // content or the error it failed with
+      Pair<String, VcsException> result = TfsExecutionUtil.waitFor(future);
+      //noinspection ConstantConditions
+      if (result.second != null) {
+        throw result.second;
+      }
+      return result.first;
+    }
+
+    private void prefetch(int from, int to) {
+      myNextToPrefetch = Math.max(myNextToPrefetch, from);
+      while (myNextToPrefetch <= to && myNextToPrefetch < myRevisions.size()) {
+        final TFSFileRevision revision = myRevisions.get(myNextToPrefetch++);
+        myPrefetched.put(revision, myExecutor.submit(() -> {
+          final Ref<String> content = new Ref<>();
+          final Ref<VcsException> exception = new Ref<>();
+          ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+            try {
+              content.set(myDelegate.getContent(revision));
+            }
+            catch (VcsException e) {
+              exception.set(e);
+            }
+          }, myProgressIndicator);
+          return Pair.create(content.get(), exception.get());
+        }));
+      }
+    }
+
+    void dispose() {
+      // annotation is complete or failed, revisions left are not needed
+      for (Future<?> future : myPrefetched.values()) {
+        future.cancel(false);
+      }
+      myPrefetched.clear();
+      myExecutor.shutdownNow();
+    }
+  }
+
   private final @NotNull TFSVcs myVcs;
 
   public TFSAnnotationProvider(final @NotNull TFSVcs vcs) {
@@ -134,7 +216,7 @@ public class TFSAnnotationProvider implements AnnotationProvider {
 
     final ProgressIndicator progressIndicator = ProgressManager.getInstance().getProgressIndicator();
 
-    final AnnotationBuilder annotationBuilder = new AnnotationBuilder(revisions, new AnnotationBuilder.ContentProvider() {
+    final AnnotationBuilder.ContentProvider contentProvider = new AnnotationBuilder.ContentProvider() {
       @Override
       public String getContent(final TFSFileRevision revision) throws VcsException {
         TFSProgressUtil.checkCanceled(progressIndicator);
@@ -147,9 +229,28 @@ public class TFSAnnotationProvider implements AnnotationProvider {
         }
         return content;
       }
-    });
+    };
+
+    final AnnotationBuilder annotationBuilder;
+    if (PREFETCH_COUNT > 0 && revisions.size() > 1) {
+      PrefetchingContentProvider prefetchingProvider = new PrefetchingContentProvider(revisions, contentProvider);
+      try {
+        annotationBuilder = new AnnotationBuilder(revisions, prefetchingProvider, createCache(workspace, revisions.get(0)));
+      }
+      finally {
+        prefetchingProvider.dispose();
+      }
+    }
+    else {
+      annotationBuilder = new AnnotationBuilder(revisions, contentProvider, createCache(workspace, revisions.get(0)));
+    }
 
     return new TFSFileAnnotation(myVcs, workspace, annotationBuilder.getAnnotatedContent(), annotationBuilder.getLineRevisions(),
                                  localPath.getVirtualFile());
   }
+
+  private static AnnotationBuilder.AnnotationCache createCache(final WorkspaceInfo workspace, final TFSFileRevision revision) {
+    final int itemId = ((TfsRevisionNumber)revision.getRevisionNumber()).getItemId();
+    return new TFSAnnotationCache(workspace.getServer().getUri().toASCIIString(), itemId);
+  }
 }
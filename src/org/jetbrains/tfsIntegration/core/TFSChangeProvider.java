@@ -24,6 +24,9 @@ import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.tfsIntegration.core.tfs.*;
+import org.jetbrains.tfsIntegration.exceptions.ConnectionFailedException;
+import org.jetbrains.tfsIntegration.exceptions.ConnectionTimeoutException;
+import org.jetbrains.tfsIntegration.exceptions.HostNotFoundException;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import java.text.MessageFormat;
@@ -80,11 +83,24 @@ public class TFSChangeProvider implements ChangeProvider {
     try {
       final Ref<Boolean> mappingFound = Ref.create(false);
       // ingore orphan roots here
-      WorkstationHelper.processByWorkspaces(roots, true, myProject, new WorkstationHelper.VoidProcessDelegate() {
+      WorkstationHelper.processByWorkspaces(roots, true, myProject, true, new WorkstationHelper.VoidProcessDelegate() {
         @Override
         public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) throws TfsException {
-          StatusProvider
-            .visitByStatus(workspace, paths, true, progress, new ChangelistBuilderStatusVisitor(myProject, builder, workspace), myProject);
+          ChangelistBuilderStatusVisitor visitor = new ChangelistBuilderStatusVisitor(myProject, builder, workspace);
+          if (!StatusProvider.visitByStatusLocally(workspace, paths, false, progress, visitor, myProject)) {
+            try {
+              StatusProvider.visitByStatus(workspace, paths, true, progress, visitor, myProject);
+            }
+            catch (ConnectionFailedException | ConnectionTimeoutException | HostNotFoundException e) {
+              // the server is not reachable, local workspace status may still be known
+              if (!StatusProvider.visitByStatusLocally(workspace, paths, true, progress, visitor, myProject)) {
+                throw e;
+              }
+            }
+          }
+          if (LocalBaseline.ENABLED && workspace.isLocal()) {
+            LocalBaseline.getInstance(workspace).save();
+          }
           mappingFound.set(true);
         }
       });
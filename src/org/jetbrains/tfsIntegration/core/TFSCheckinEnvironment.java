@@ -41,8 +41,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.checkin.CheckinParameters;
 import org.jetbrains.tfsIntegration.core.tfs.*;
+import org.jetbrains.tfsIntegration.core.tfs.operations.ApplyProgress;
 import org.jetbrains.tfsIntegration.core.tfs.operations.ScheduleForAddition;
 import org.jetbrains.tfsIntegration.core.tfs.operations.ScheduleForDeletion;
+import org.jetbrains.tfsIntegration.core.tfs.operations.UndoPendingChanges;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
 import org.jetbrains.tfsIntegration.exceptions.OperationFailedException;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
@@ -57,6 +59,9 @@ import java.util.List;
 import java.util.*;
 
 public class TFSCheckinEnvironment implements CheckinEnvironment {
+  // undo edits of files which content was not modified instead of passing them to check in
+  private static final boolean UNDO_UNCHANGED_EDITS = Boolean.getBoolean("org.jetbrains.tfsIntegration.undoUnchangedEdits");
+
   @NotNull private final TFSVcs myVcs;
 
   public TFSCheckinEnvironment(@NotNull TFSVcs vcs) {
@@ -171,31 +176,65 @@ public class TFSCheckinEnvironment implements CheckinEnvironment {
           try {
             TFSProgressUtil.setProgressText(progressIndicator, TFSBundle.message("loading.pending.changes"));
             // get pending changes for given items
-            Collection<PendingChange> pendingChanges = workspace.getServer().getVCS()
+            final Collection<PendingChange> pendingChanges = new ArrayList<>(workspace.getServer().getVCS()
               .queryPendingSetsByLocalPaths(workspace.getName(), workspace.getOwnerName(), paths, RecursionType.None, myVcs.getProject(),
-                                            TFSBundle.message("loading.pending.changes"));
+                                            TFSBundle.message("loading.pending.changes")));
+
+            if (LocalBaseline.ENABLED && workspace.isLocal()) {
+              List<ItemPath> unpended = LocalBaseline.getInstance(workspace).findUnpendedEdits(paths, pendingChanges);
+              if (!unpended.isEmpty()) {
+                ResultWithFailures<GetOperation> pendResult = workspace.getServer().getVCS()
+                  .checkoutForEdit(workspace.getName(), workspace.getOwnerName(), unpended, myVcs.getProject(),
+                                   TFSBundle.message("checking.out"));
+                errors.addAll(TfsUtil.getVcsExceptions(pendResult.getFailures()));
+                pendingChanges.clear();
+                pendingChanges.addAll(workspace.getServer().getVCS()
+                  .queryPendingSetsByLocalPaths(workspace.getName(), workspace.getOwnerName(), paths, RecursionType.None,
+                                                myVcs.getProject(), TFSBundle.message("loading.pending.changes")));
+              }
+            }
 
             if (pendingChanges.isEmpty()) {
               return;
             }
 
             Collection<String> checkIn = new ArrayList<>();
-            // upload files
-            TFSProgressUtil.setProgressText(progressIndicator, TFSBundle.message("uploading.files"));
+            Collection<PendingChange> upload = new ArrayList<>();
             for (PendingChange pendingChange : pendingChanges) {
               if (pendingChange.getType() == ItemType.File) {
                 ChangeTypeMask changeType = new ChangeTypeMask(pendingChange.getChg());
                 if (changeType.contains(ChangeType_type0.Edit) || changeType.contains(ChangeType_type0.Add)) {
-                  TFSProgressUtil
-                    .setProgressText2(progressIndicator, VersionControlPath.localPathFromTfsRepresentation(pendingChange.getLocal()));
-                  workspace.getServer().getVCS()
-                    .uploadItem(workspace, pendingChange, myVcs.getProject(), null);
+                  upload.add(pendingChange);
                 }
               }
               checkIn.add(pendingChange.getItem());
             }
+            // upload files
+            TFSProgressUtil.setProgressText(progressIndicator, TFSBundle.message("uploading.files"));
+            Collection<PendingChange> unchanged = UploadPipeline.upload(workspace, upload, myVcs.getProject());
             TFSProgressUtil.setProgressText2(progressIndicator, "");
 
+            // the server itself skips unchanged edits on check in, undoing them here makes the files read-only right away
+            if (UNDO_UNCHANGED_EDITS && !unchanged.isEmpty()) {
+              Collection<String> undo = new ArrayList<>();
+              Collection<FilePath> undone = new ArrayList<>();
+              for (PendingChange pendingChange : unchanged) {
+                if (new ChangeTypeMask(pendingChange.getChg()).containsOnly(ChangeType_type0.Edit)) {
+                  undo.add(pendingChange.getItem());
+                  undone.add(VersionControlPath.getFilePath(pendingChange.getLocal(), false));
+                  pendingChanges.remove(pendingChange);
+                }
+              }
+              UndoPendingChanges.UndoPendingChangesResult undoResult =
+                UndoPendingChanges.execute(myVcs.getProject(), workspace, undo, true, ApplyProgress.EMPTY, false);
+              errors.addAll(undoResult.errors);
+              checkIn.removeAll(undo);
+              TfsFileUtil.markDirty(myVcs.getProject(), undone, Collections.emptyList());
+              if (checkIn.isEmpty()) {
+                return;
+              }
+            }
+
             final WorkItemsCheckinParameters state = myVcs.getCheckinData().parameters.getWorkItems(workspace.getServer());
             final Map<WorkItem, CheckinWorkItemAction> workItemActions =
               state != null ? state.getWorkItemsActions() : Collections.emptyMap();
@@ -263,9 +302,17 @@ public class TFSCheckinEnvironment implements CheckinEnvironment {
             TFSProgressUtil.setProgressText(progressIndicator, TFSBundle.message("updating.work.items"));
             if (commitFailed.isEmpty()) {
               CheckinResult checkinResult = result.getResult().iterator().next();
-              workspace.getServer().getVCS()
+              if (LocalBaseline.ENABLED && workspace.isLocal()) {
+                LocalBaseline.getInstance(workspace).checkedIn(pendingChanges, checkinResult.getCset());
+              }
+              Map<WorkItem, TfsException> failedWorkItems = workspace.getServer().getVCS()
                 .updateWorkItemsAfterCheckin(workspace.getOwnerName(), workItemActions, checkinResult.getCset(), myVcs.getProject(),
                                              null);
+              for (Map.Entry<WorkItem, TfsException> failure : failedWorkItems.entrySet()) {
+                errors.add(new VcsException(
+                  TFSBundle.message("failed.to.update.work.item", String.valueOf(failure.getKey().getId()), failure.getValue().getMessage()),
+                  failure.getValue()));
+              }
             }
 
             TfsFileUtil.markDirty(myVcs.getProject(), invalidateRoots, invalidateFiles);
@@ -273,6 +320,9 @@ public class TFSCheckinEnvironment implements CheckinEnvironment {
           catch (IOException e) {
             errors.add(new VcsException(e));
           }
+          catch (VcsException e) {
+            errors.add(e);
+          }
         }
       });
     }
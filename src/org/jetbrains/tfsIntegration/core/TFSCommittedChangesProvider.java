@@ -19,6 +19,7 @@ package org.jetbrains.tfsIntegration.core;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vcs.*;
 import com.intellij.openapi.vcs.actions.VcsContextFactory;
 import com.intellij.openapi.vcs.history.VcsRevisionNumber;
@@ -129,7 +130,7 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
 
     try {
       for (Map.Entry<WorkspaceInfo, List<FilePath>> entry : tfsRepositoryLocation.getPathsByWorkspaces().entrySet()) {
-        WorkspaceInfo workspace = entry.getKey();
+        final WorkspaceInfo workspace = entry.getKey();
         final Map<FilePath, ExtendedItem> extendedItems =
           workspace.getExtendedItems(entry.getValue(), myProject, TFSBundle.message("loading.items"));
         for (Map.Entry<FilePath, ExtendedItem> localPath2ExtendedItem : extendedItems.entrySet()) {
@@ -157,14 +158,17 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
           final RecursionType recursionType = localPath2ExtendedItem.getKey().isDirectory() ? RecursionType.Full : null;
           ItemSpec itemSpec = VersionControlServer.createItemSpec(extendedItem.getSitem(), recursionType);
 
-          List<Changeset> changeSets = workspace.getServer().getVCS()
+          // changes are loaded by TFSChangeList on demand, so pass changesets along as soon as every page arrives
+          workspace.getServer().getVCS()
             .queryHistory(workspace.getName(), workspace.getOwnerName(), itemSpec, settings.getUserFilter(), itemVersion, versionFrom,
-                          versionTo, maxCount, myProject, TFSBundle.message("loading.history"));
-          for (Changeset changeset : changeSets) {
-            final TFSChangeList newList = new TFSChangeList(workspace, changeset.getCset(), changeset.getOwner(),
-                                                            changeset.getDate().getTime(), changeset.getComment(), myVcs);
-            consumer.consume(newList);
-          }
+                          versionTo, maxCount, false, myProject, TFSBundle.message("loading.history"), changesets -> {
+                for (Changeset changeset : changesets) {
+                  final TFSChangeList newList = new TFSChangeList(workspace, changeset.getCset(), changeset.getOwner(),
+                                                                  changeset.getDate().getTime(), changeset.getComment(), myVcs);
+                  consumer.consume(newList);
+                }
+                return true;
+              });
 
         }
       }
@@ -205,10 +209,14 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
     final VersionSpec versionTo = LatestVersionSpec.INSTANCE;
     final int maxCount = 1;
     ItemSpec itemSpec = VersionControlServer.createItemSpec(extendedItem.getSitem(), RecursionType.Full);
-    List<Changeset> changeSets = workspace.getServer().getVCS()
-      .queryHistory(workspace.getName(), workspace.getOwnerName(), itemSpec, user, itemVersion, versionFrom, versionTo, maxCount, myProject,
-                    TFSBundle.message("loading.history"));
-    return changeSets.get(0).getCset();
+    final Ref<Changeset> latest = new Ref<>();
+    workspace.getServer().getVCS()
+      .queryHistory(workspace.getName(), workspace.getOwnerName(), itemSpec, user, itemVersion, versionFrom, versionTo, maxCount, false,
+                    myProject, TFSBundle.message("loading.history"), changesets -> {
+          latest.set(changesets[0]);
+          return false;
+        });
+    return latest.get().getCset();
   }
 
   @NotNull
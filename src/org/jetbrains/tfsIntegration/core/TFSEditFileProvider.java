@@ -27,10 +27,14 @@ import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
 public class TFSEditFileProvider implements EditFileProvider {
+  // files are made writable at once and checked out in background by CheckoutForEditQueue
+  private static final boolean OPTIMISTIC_CHECKOUT = Boolean.getBoolean("org.jetbrains.tfsIntegration.optimisticCheckout");
+
   private final Project myProject;
 
   public TFSEditFileProvider(Project project) {
@@ -39,16 +43,35 @@ public class TFSEditFileProvider implements EditFileProvider {
 
   @Override
   public void editFiles(final VirtualFile[] files) throws VcsException {
+    if (OPTIMISTIC_CHECKOUT) {
+      TFSVcs.getInstance(myProject).getCheckoutForEditQueue().add(files);
+      return;
+    }
+
     final Collection<VcsException> errors = new ArrayList<>();
+    checkoutForEdit(myProject, Arrays.asList(files), new ArrayList<>(), errors);
+    if (!errors.isEmpty()) {
+      throw TfsUtil.collectExceptions(errors);
+    }
+  }
+
+  /**
+   * @param checkedOut receives files that were checked out and made writable
+   * @param errors     receives failures of particular files
+   */
+  static void checkoutForEdit(final Project project,
+                              Collection<VirtualFile> files,
+                              final Collection<VirtualFile> checkedOut,
+                              final Collection<VcsException> errors) throws VcsException {
     try {
       Collection<FilePath> orphans =
-        WorkstationHelper.processByWorkspaces(TfsFileUtil.getFilePaths(files), false, myProject,
+        WorkstationHelper.processByWorkspaces(TfsFileUtil.getFilePaths(files), false, project,
                                               new WorkstationHelper.VoidProcessDelegate() {
           @Override
           public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) throws TfsException {
             final ResultWithFailures<GetOperation> processResult =
               workspace.getServer().getVCS()
-                .checkoutForEdit(workspace.getName(), workspace.getOwnerName(), paths, myProject, TFSBundle.message("checking.out"));
+                .checkoutForEdit(workspace.getName(), workspace.getOwnerName(), paths, project, TFSBundle.message("checking.out"));
             Collection<VirtualFile> makeWritable = new ArrayList<>();
             for (GetOperation getOperation : processResult.getResult()) {
               TFSVcs.assertTrue(getOperation.getSlocal().equals(getOperation.getTlocal()));
@@ -59,6 +82,7 @@ public class TFSEditFileProvider implements EditFileProvider {
             }
             try {
               TfsFileUtil.setReadOnly(makeWritable, false);
+              checkedOut.addAll(makeWritable);
             }
             catch (IOException e) {
               errors.add(new VcsException(e));
@@ -78,9 +102,6 @@ public class TFSEditFileProvider implements EditFileProvider {
     catch (TfsException e) {
       throw new VcsException(e);
     }
-    if (!errors.isEmpty()) {
-      throw TfsUtil.collectExceptions(errors);
-    }
   }
 
   @Override
@@ -29,12 +29,14 @@ import org.jetbrains.tfsIntegration.core.tfs.WorkspaceInfo;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.Date;
 
 public class TFSFileRevision implements VcsFileRevision {
   private final Project myProject;
   private final Date myDate;
-  @Nullable private byte[] myContent;
+  @Nullable private SoftReference<byte[]> myContent;
+  private volatile boolean myContentLoaded;
   private final String myCommitMessage;
   private final String myAuthor;
   private final int myItemId;
@@ -91,13 +93,22 @@ public class TFSFileRevision implements VcsFileRevision {
 
   @Override
   public byte[] loadContent() throws IOException, VcsException {
-    return myContent = createContentRevision().getContentAsBytes();
+    byte[] content = createContentRevision().getContentAsBytes();
+    myContent = new SoftReference<>(content);
+    myContentLoaded = true;
+    return content;
   }
 
   @Override
   @Nullable
   public byte[] getContent() throws IOException, VcsException {
-    return myContent;
+    // null only if not loaded yet, content collected under memory pressure is read again from the revision cache
+    SoftReference<byte[]> reference = myContent;
+    byte[] content = reference != null ? reference.get() : null;
+    if (content == null && myContentLoaded) {
+      content = loadContent();
+    }
+    return content;
   }
 
   public TFSContentRevision createContentRevision() throws VcsException {
@@ -38,6 +38,7 @@ import org.jetbrains.tfsIntegration.exceptions.TfsException;
 import org.jetbrains.tfsIntegration.ui.UpdateSettingsForm;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TFSUpdateEnvironment implements UpdateEnvironment {
   private final @NotNull TFSVcs myVcs;
@@ -139,12 +140,12 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
   @Override
   @Nullable
   public Configurable createConfigurable(final Collection<FilePath> files) {
-    final Map<WorkspaceInfo, UpdateSettingsForm.WorkspaceSettings> workspacesSettings =
-      new HashMap<>();
+    // filled concurrently for workspaces of different servers
+    final Map<WorkspaceInfo, UpdateSettingsForm.WorkspaceSettings> workspacesSettings = new ConcurrentHashMap<>();
     final Ref<TfsException> error = new Ref<>();
     Runnable r = () -> {
       try {
-        WorkstationHelper.processByWorkspaces(files, true, myVcs.getProject(), new WorkstationHelper.VoidProcessDelegate() {
+        WorkstationHelper.processByWorkspaces(files, true, myVcs.getProject(), true, new WorkstationHelper.VoidProcessDelegate() {
           @Override
           public void executeRequest(final WorkspaceInfo workspace, final List<ItemPath> paths) throws TfsException {
             final Map<FilePath, ExtendedItem> result =
@@ -36,6 +36,7 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.checkin.CheckinParameters;
+import org.jetbrains.tfsIntegration.core.tfs.ServerInfo;
 import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
 import org.jetbrains.tfsIntegration.core.tfs.TfsRevisionNumber;
 import org.jetbrains.tfsIntegration.core.tfs.Workstation;
@@ -71,6 +72,7 @@ public class TFSVcs extends AbstractVcs {
   private AnnotationProvider myAnnotationProvider;
   private final List<RevisionChangedListener> myRevisionChangedListeners = ContainerUtil.createLockFreeCopyOnWriteList();
   private final CheckinData myCheckinData = new CheckinData();
+  private final CheckoutForEditQueue myCheckoutForEditQueue;
 
   public TFSVcs(@NotNull Project project) {
     super(project, TFS_NAME);
@@ -78,12 +80,17 @@ public class TFSVcs extends AbstractVcs {
     myAddConfirmation = vcsManager.getStandardConfirmation(VcsConfiguration.StandardConfirmation.ADD, this);
     myDeleteConfirmation = vcsManager.getStandardConfirmation(VcsConfiguration.StandardConfirmation.REMOVE, this);
     myCheckoutOptions = vcsManager.getStandardOption(VcsConfiguration.StandardOption.CHECKOUT, this);
+    myCheckoutForEditQueue = new CheckoutForEditQueue(project);
   }
 
   public CheckinData getCheckinData() {
     return myCheckinData;
   }
 
+  CheckoutForEditQueue getCheckoutForEditQueue() {
+    return myCheckoutForEditQueue;
+  }
+
   public static TFSVcs getInstance(Project project) {
     return (TFSVcs)ProjectLevelVcsManager.getInstance(project).findVcsByName(TFS_NAME);
   }
@@ -105,11 +112,15 @@ public class TFSVcs extends AbstractVcs {
   public void activate() {
     myFileListener = new TFSFileListener(getProject(), this);
     TfsSdkManager.activate();
+    for (ServerInfo server : Workstation.getInstance().getServers()) {
+      server.prefetchIdentity(myProject);
+    }
   }
 
   @Override
   public void deactivate() {
     Disposer.dispose(myFileListener);
+    myCheckoutForEditQueue.flushInBackground();
   }
 
   @Override
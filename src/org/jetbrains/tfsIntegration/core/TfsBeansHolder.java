@@ -12,6 +12,7 @@ import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.params.HttpClientParams;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.configuration.Credentials;
@@ -181,6 +182,11 @@ public class TfsBeansHolder {
     int index = forProxy ? 1 : 0;
     if (myUploadDownloadClients[index] == null) {
       HttpConnectionManager connManager = new MultiThreadedHttpConnectionManager();
+      // keep a persistent connection for every parallel transfer
+      int maxConnections = Math.max(WebServiceHelper.PARALLEL_TRANSFERS,
+                                    HttpConnectionManagerParams.DEFAULT_MAX_HOST_CONNECTIONS);
+      connManager.getParams().setDefaultMaxConnectionsPerHost(maxConnections);
+      connManager.getParams().setMaxTotalConnections(Math.max(maxConnections, HttpConnectionManagerParams.DEFAULT_MAX_TOTAL_CONNECTIONS));
       myUploadDownloadClients[index] = new HttpClient(connManager);
       HttpClientParams clientParams = new HttpClientParams();
       // Set the default timeout in case we have a connection pool starvation to 30sec
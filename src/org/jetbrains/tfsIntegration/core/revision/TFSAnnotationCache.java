@@ -0,0 +1,116 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.revision;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.TFSFileRevision;
+import org.jetbrains.tfsIntegration.core.tfs.AnnotationBuilder;
+
+import java.io.*;
+
+/**
+ * Keeps the annotation of the newest annotated revision of an item on disk next to the revision contents.
+ * Only one revision per item is kept: annotating a newer revision extends it, the older one is not needed anymore.
+ */
+public class TFSAnnotationCache implements AnnotationBuilder.AnnotationCache {
+  private static final Logger LOG = Logger.getInstance(TFSAnnotationCache.class.getName());
+
+  @NonNls private static final String ANNOTATIONS_DIR = "annotations";
+  private static final int FORMAT_VERSION = 1;
+
+  private final File myFile;
+
+  private boolean myLoaded;
+  private int myChangeset;
+  @Nullable private int[] myLineChangesets;
+
+  public TFSAnnotationCache(@NotNull String serverUri, int itemId) {
+    myFile = new File(TFSPersistentFileStore.getStoreDir(),
+                      ANNOTATIONS_DIR + File.separator + TFSPersistentFileStore.getServerKey(serverUri) + File.separator + itemId);
+  }
+
+  @Nullable
+  @Override
+  public int[] getLineChangesets(TFSFileRevision revision) {
+    load();
+    return myLineChangesets != null && myChangeset == revision.getRevisionNumber().getValue() ? myLineChangesets : null;
+  }
+
+  @Override
+  public void putLineChangesets(TFSFileRevision revision, int[] lineChangesets) {
+    load();
+    int changeset = revision.getRevisionNumber().getValue();
+    if (myLineChangesets != null && myChangeset >= changeset) {
+      return;
+    }
+    myChangeset = changeset;
+    myLineChangesets = lineChangesets;
+
+    File temp = null;
+    try {
+      FileUtil.createParentDirs(myFile);
+      temp = FileUtil.createTempFile(myFile.getParentFile(), myFile.getName(), null, true);
+      try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        stream.writeInt(FORMAT_VERSION);
+        stream.writeInt(changeset);
+        stream.writeInt(lineChangesets.length);
+        for (int lineChangeset : lineChangesets) {
+          stream.writeInt(lineChangeset);
+        }
+      }
+      FileUtil.rename(temp, myFile);
+      temp = null;
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save annotation: " + myFile.getPath(), e);
+    }
+    finally {
+      if (temp != null) {
+        FileUtil.delete(temp);
+      }
+    }
+  }
+
+  private void load() {
+    if (myLoaded) {
+      return;
+    }
+    myLoaded = true;
+    if (!myFile.isFile()) {
+      return;
+    }
+    try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)))) {
+      if (stream.readInt() != FORMAT_VERSION) {
+        return;
+      }
+      int changeset = stream.readInt();
+      int[] lineChangesets = new int[stream.readInt()];
+      for (int i = 0; i < lineChangesets.length; i++) {
+        lineChangesets[i] = stream.readInt();
+      }
+      myChangeset = changeset;
+      myLineChangesets = lineChangesets;
+    }
+    catch (IOException e) {
+      LOG.info("Failed to load annotation: " + myFile.getPath(), e);
+    }
+  }
+}
@@ -17,7 +17,7 @@
 package org.jetbrains.tfsIntegration.core.revision;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.ByteBackedContentRevision;
@@ -35,8 +35,12 @@ import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
 import org.jetbrains.tfsIntegration.exceptions.OperationFailedException;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.lang.ref.SoftReference;
 import java.text.MessageFormat;
 import java.util.Collection;
 
@@ -46,8 +50,9 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
 
   private final ServerInfo myServer;
 
+  // content is kept in the store, so it's fine to let it go under memory pressure
   @Nullable
-  private byte[] myContent;
+  private SoftReference<byte[]> myContent;
 
   protected TFSContentRevision(final Project project, final ServerInfo server) {
     myProject = project;
@@ -195,15 +200,41 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
   @Override
   @Nullable
   public String getContent() throws VcsException {
-    return new String(getContentAsBytes(), getFile().getCharset(myProject));
+    byte[] content = getCachedContent();
+    if (content != null) {
+      return new String(content, getFile().getCharset(myProject));
+    }
+    // decode straight from the store, there is no need to hold the bytes along with the text
+    InputStream stream = getContentAsStream();
+    if (stream == null) {
+      return null;
+    }
+    try {
+      return FileUtil.loadTextAndClose(new InputStreamReader(stream, getFile().getCharset(myProject)));
+    }
+    catch (IOException e) {
+      throw new VcsException(e);
+    }
   }
 
   @Nullable
   @Override
   public byte[] getContentAsBytes() throws VcsException {
-    if (myContent == null) {
+    byte[] content = getCachedContent();
+    if (content == null) {
       try {
-        myContent = loadContent();
+        TFSContentStore store = getStore();
+        if (store != null) {
+          try {
+            content = store.loadContent();
+          }
+          catch (FileNotFoundException e) {
+            // evicted since it was found, download again
+            store = getStore();
+            content = store != null ? store.loadContent() : null;
+          }
+          myContent = new SoftReference<>(content);
+        }
       }
       catch (TfsException e) {
         throw new VcsException(e);
@@ -212,11 +243,54 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
         throw new VcsException(e);
       }
     }
-    return myContent;
+    return content;
+  }
+
+  /**
+   * Streams the content from the local store without keeping it in memory, downloads the content first if needed
+   *
+   * @return stream to be closed by the caller or <code>null</code> if the item does not exist
+   */
+  @Nullable
+  public InputStream getContentAsStream() throws VcsException {
+    try {
+      TFSContentStore store = getStore();
+      if (store == null) {
+        return null;
+      }
+      try {
+        return store.openContentStream();
+      }
+      catch (FileNotFoundException e) {
+        // evicted since it was found, download again
+        store = getStore();
+        return store != null ? store.openContentStream() : null;
+      }
+    }
+    catch (TfsException e) {
+      throw new VcsException(e);
+    }
+    catch (IOException e) {
+      throw new VcsException(e);
+    }
+  }
+
+  /**
+   * @return content size reported by the server or 0 if the item does not exist
+   */
+  public long getSize() throws TfsException {
+    Item item = getItem();
+    return item != null ? item.getLen() : 0;
   }
 
   @Nullable
-  private byte[] loadContent() throws TfsException, IOException {
+  private byte[] getCachedContent() {
+    SoftReference<byte[]> content = myContent;
+    return content != null ? content.get() : null;
+  }
+
+  @Nullable
+  private TFSContentStore getStore() throws TfsException, IOException {
     int itemId = getItemId();
     int changeset = getChangeset();
 
@@ -235,23 +309,15 @@ public abstract class TFSContentRevision implements ByteBackedContentRevision {
       TFSVcs.assertTrue(downloadUrl != null, "Item without download URL: " + item.getItem());
 
       store = TFSContentStoreFactory.create(myServer.getUri().toASCIIString(), itemId, changeset);
-      final Ref<TfsException> exception = new Ref<>();
+      // let the store know about a failed download so that partial content is not kept
       store.saveContent(new TfsFileUtil.ContentWriter() {
         @Override
-        public void write(final OutputStream outputStream) {
-          try {
-            myServer.getVCS().downloadItem(myProject, downloadUrl, outputStream, TFSBundle.message("downloading.0", getFile().getName()));
-          }
-          catch (TfsException e) {
-            exception.set(e);
-          }
+        public void write(final OutputStream outputStream) throws TfsException {
+          myServer.getVCS().downloadItem(myProject, downloadUrl, outputStream, TFSBundle.message("downloading.0", getFile().getName()));
         }
       });
-      if (!exception.isNull()) {
-        throw exception.get();
-      }
     }
-    return store.loadContent();
+    return store;
   }
 
   @NonNls
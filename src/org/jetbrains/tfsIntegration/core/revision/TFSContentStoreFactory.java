@@ -23,12 +23,16 @@ import java.io.IOException;
 public class TFSContentStoreFactory {
 
   public static TFSContentStore create(final String serverUri, final int itemId, final int revision) throws IOException {
-    return new TFSTmpFileStore(serverUri, itemId, revision);
+    return TFSPersistentFileStore.create(serverUri, itemId, revision);
+  }
+
+  public static long getCapacity() {
+    return TFSPersistentFileStore.getCapacity();
   }
 
   @Nullable
   public static TFSContentStore find(final String serverUri, final int itemId, final int revision) throws IOException {
-    return TFSTmpFileStore.find(serverUri, itemId, revision);
+    return TFSPersistentFileStore.find(serverUri, itemId, revision);
   }
 }
 
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.revision;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.DigestUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Revision contents kept under the IDE system directory so that they survive restarts and are shared between projects.
+ * <p/>
+ * Contents are stored once per MD5 hash in <code>objects</code>, an index file per (server, item, changeset) in
+ * <code>index</code> holds the hash. When the total size of contents exceeds the limit, least recently used contents
+ * are removed along with the index entries pointing to them; the content being saved is never removed. Sizes and access
+ * order of contents are kept in memory so that the files are only scanned once per session. Contents removed after a store
+ * was found are reported by {@link FileNotFoundException} when they are read.
+ */
+public class TFSPersistentFileStore implements TFSContentStore {
+  private static final Logger LOG = Logger.getInstance(TFSPersistentFileStore.class.getName());
+
+  private static final long MAX_SIZE = Long.getLong("org.jetbrains.tfsIntegration.revisionCacheSizeMb", 512) * 1024 * 1024;
+  // evict some more than necessary so that eviction doesn't happen on every save
+  private static final long SIZE_AFTER_EVICTION = MAX_SIZE / 4 * 3;
+
+  @NonNls private static final String STORE_DIR = "tfs-revisions";
+  @NonNls private static final String OBJECTS_DIR = "objects";
+  @NonNls private static final String INDEX_DIR = "index";
+  @NonNls private static final String TEMP_DIR = "tmp";
+
+  private static final Object ourLock = new Object();
+  // content sizes by hash, least recently used first, loaded on first access; guarded by ourLock as the fields below
+  private static LinkedHashMap<String, Long> ourContents;
+  private static long ourTotalSize;
+  private static boolean ourEvicting;
+
+  private final File myIndexFile;
+  @Nullable private File myContentFile;
+
+  private TFSPersistentFileStore(@NotNull File indexFile, @Nullable File contentFile) {
+    myIndexFile = indexFile;
+    myContentFile = contentFile;
+  }
+
+  @Nullable
+  public static TFSContentStore find(final String serverUri, final int itemId, final int revision) throws IOException {
+    ensureInitialized();
+    File indexFile = getIndexFile(serverUri, itemId, revision);
+    if (!indexFile.isFile()) {
+      return null;
+    }
+    String hash;
+    try {
+      hash = FileUtil.loadFile(indexFile, StandardCharsets.US_ASCII).trim();
+    }
+    catch (FileNotFoundException e) {
+      // removed by eviction meanwhile
+      return null;
+    }
+    synchronized (ourLock) {
+      if (ourContents.get(hash) == null) {
+        // content evicted
+        FileUtil.delete(indexFile);
+        return null;
+      }
+    }
+    File contentFile = getContentFile(hash);
+    touch(contentFile);
+    return new TFSPersistentFileStore(indexFile, contentFile);
+  }
+
+  public static TFSContentStore create(final String serverUri, final int itemId, final int revision) throws IOException {
+    ensureInitialized();
+    return new TFSPersistentFileStore(getIndexFile(serverUri, itemId, revision), null);
+  }
+
+  @Override
+  public void saveContent(TfsFileUtil.ContentWriter contentWriter) throws TfsException, IOException {
+    File tempDir = new File(getStoreDir(), TEMP_DIR);
+    File temp = FileUtil.createTempFile(tempDir, "content", null, true);
+    try {
+      MessageDigest digest = DigestUtil.md5();
+      try (OutputStream stream = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(temp)), digest)) {
+        contentWriter.write(stream);
+      }
+      String hash = toHex(digest.digest());
+      File contentFile = getContentFile(hash);
+
+      Set<String> evicted = null;
+      synchronized (ourLock) {
+        if (ourContents.get(hash) != null) {
+          // same content is already stored for another revision
+          touch(contentFile);
+        }
+        else {
+          // the file may be still there if it is being evicted, the content is the same then
+          if (!contentFile.isFile()) {
+            FileUtil.createParentDirs(contentFile);
+            FileUtil.rename(temp, contentFile);
+          }
+          long length = contentFile.length();
+          ourContents.put(hash, length);
+          ourTotalSize += length;
+        }
+        File tempIndex = FileUtil.createTempFile(tempDir, "index", null, true);
+        FileUtil.writeToFile(tempIndex, hash.getBytes(StandardCharsets.US_ASCII));
+        FileUtil.createParentDirs(myIndexFile);
+        FileUtil.rename(tempIndex, myIndexFile);
+        myContentFile = contentFile;
+
+        if (ourTotalSize > MAX_SIZE && !ourEvicting) {
+          evicted = chooseEvicted(hash);
+          ourEvicting = true;
+        }
+      }
+      if (evicted != null) {
+        evict(evicted);
+      }
+    }
+    finally {
+      if (temp.exists()) {
+        FileUtil.delete(temp);
+      }
+    }
+  }
+
+  @NotNull
+  @Override
+  public byte[] loadContent() throws IOException {
+    if (myContentFile == null) {
+      throw new FileNotFoundException("Content is not saved: " + myIndexFile.getPath());
+    }
+    return FileUtil.loadFileBytes(myContentFile);
+  }
+
+  @NotNull
+  @Override
+  public InputStream openContentStream() throws IOException {
+    if (myContentFile == null) {
+      throw new FileNotFoundException("Content is not saved: " + myIndexFile.getPath());
+    }
+    return new BufferedInputStream(new FileInputStream(myContentFile));
+  }
+
+  /**
+   * @return total size of contents kept by eviction, contents saved within it don't evict each other
+   */
+  static long getCapacity() {
+    return SIZE_AFTER_EVICTION;
+  }
+
+  static File getStoreDir() {
+    return new File(PathManager.getSystemPath(), STORE_DIR);
+  }
+
+  private static File getIndexFile(final String serverUri, final int itemId, final int revision) {
+    // index files are spread among subfolders to avoid huge folders
+    String bucket = Integer.toHexString(itemId & 0xff);
+    return new File(getStoreDir(), INDEX_DIR + File.separator + getServerKey(serverUri) + File.separator + bucket + File.separator +
+                                   itemId + "." + revision);
+  }
+
+  private static File getContentFile(String hash) {
+    return new File(getStoreDir(), OBJECTS_DIR + File.separator + hash.substring(0, 2) + File.separator + hash);
+  }
+
+  static String getServerKey(String serverUri) {
+    return toHex(DigestUtil.md5().digest(serverUri.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder result = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return result.toString();
+  }
+
+  private static void touch(File file) {
+    //noinspection ResultOfMethodCallIgnored
+    file.setLastModified(System.currentTimeMillis());
+  }
+
+  private static void ensureInitialized() {
+    synchronized (ourLock) {
+      if (ourContents != null) {
+        return;
+      }
+      // leftovers of an interrupted session
+      FileUtil.delete(new File(getStoreDir(), TEMP_DIR));
+      List<File> files = listContentFiles();
+      final long[] lastModified = new long[files.size()];
+      List<Integer> order = new ArrayList<>(files.size());
+      for (int i = 0; i < files.size(); i++) {
+        lastModified[i] = files.get(i).lastModified();
+        order.add(i);
+      }
+      order.sort(Comparator.comparingLong(i -> lastModified[i]));
+
+      ourContents = new LinkedHashMap<>(16, 0.75f, true);
+      ourTotalSize = 0;
+      for (int i : order) {
+        File file = files.get(i);
+        long length = file.length();
+        ourContents.put(file.getName(), length);
+        ourTotalSize += length;
+      }
+    }
+  }
+
+  private static List<File> listContentFiles() {
+    List<File> result = new ArrayList<>();
+    File[] buckets = new File(getStoreDir(), OBJECTS_DIR).listFiles();
+    if (buckets != null) {
+      for (File bucket : buckets) {
+        File[] files = bucket.listFiles();
+        if (files != null) {
+          for (File file : files) {
+            if (file.isFile()) {
+              result.add(file);
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  // should be called under ourLock
+  private static Set<String> chooseEvicted(String savedHash) {
+    Set<String> result = new HashSet<>();
+    Iterator<Map.Entry<String, Long>> iterator = ourContents.entrySet().iterator();
+    while (ourTotalSize > SIZE_AFTER_EVICTION && iterator.hasNext()) {
+      Map.Entry<String, Long> entry = iterator.next();
+      if (entry.getKey().equals(savedHash)) {
+        continue;
+      }
+      ourTotalSize -= entry.getValue();
+      result.add(entry.getKey());
+      iterator.remove();
+    }
+    return result;
+  }
+
+  /**
+   * Removes the chosen contents and index entries pointing to them. Files are scanned without the lock, it is only taken
+   * to check that a content was not saved again since it was chosen and to delete it.
+   */
+  private static void evict(Set<String> hashes) {
+    try {
+      int removedContents = 0;
+      for (String hash : hashes) {
+        synchronized (ourLock) {
+          if (!ourContents.containsKey(hash) && FileUtil.delete(getContentFile(hash))) {
+            removedContents++;
+          }
+        }
+      }
+      int removedIndexFiles = hashes.isEmpty() ? 0 : removeIndexFiles(hashes);
+      LOG.debug("Revision cache: " + removedContents + " contents and " + removedIndexFiles + " index entries evicted");
+    }
+    finally {
+      synchronized (ourLock) {
+        ourEvicting = false;
+      }
+    }
+  }
+
+  private static int removeIndexFiles(Set<String> hashes) {
+    int removed = 0;
+    File[] servers = new File(getStoreDir(), INDEX_DIR).listFiles();
+    if (servers == null) {
+      return 0;
+    }
+    for (File server : servers) {
+      File[] buckets = server.listFiles();
+      if (buckets == null) {
+        continue;
+      }
+      for (File bucket : buckets) {
+        File[] files = bucket.listFiles();
+        if (files == null) {
+          continue;
+        }
+        for (File file : files) {
+          String hash;
+          try {
+            hash = FileUtil.loadFile(file, StandardCharsets.US_ASCII).trim();
+          }
+          catch (IOException e) {
+            LOG.debug(e);
+            continue;
+          }
+          if (hashes.contains(hash)) {
+            synchronized (ourLock) {
+              if (!ourContents.containsKey(hash) && FileUtil.delete(file)) {
+                removed++;
+              }
+            }
+          }
+        }
+      }
+    }
+    return removed;
+  }
+}
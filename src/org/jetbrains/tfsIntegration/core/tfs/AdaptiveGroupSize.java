@@ -0,0 +1,54 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+/**
+ * Picks the number of items to send in a single request so that a request takes about the target time
+ */
+class AdaptiveGroupSize {
+  private final int myMin;
+  private final int myMax;
+  private final long myTargetMillis;
+  private int myCurrent;
+
+  AdaptiveGroupSize(int initial, int min, int max, long targetMillis) {
+    myMin = Math.max(1, min);
+    myMax = Math.max(myMin, max);
+    myTargetMillis = Math.max(1, targetMillis);
+    myCurrent = Math.min(myMax, Math.max(myMin, initial));
+  }
+
+  synchronized int get() {
+    return myCurrent;
+  }
+
+  /**
+   * @param groupSize number of items sent in the request
+   * @param millis    time the request took
+   */
+  synchronized void update(int groupSize, long millis) {
+    if (groupSize < myCurrent / 2) {
+      // the tail of the list, doesn't tell much about the latency
+      return;
+    }
+    long estimate = millis > 0 ? groupSize * myTargetMillis / millis : Long.MAX_VALUE;
+    // don't change the size too fast since latency of a single request may be noisy
+    estimate = Math.min(estimate, (long)myCurrent * 2);
+    estimate = Math.max(estimate, myCurrent / 2);
+    myCurrent = (int)Math.min(myMax, Math.max(myMin, estimate));
+  }
+}
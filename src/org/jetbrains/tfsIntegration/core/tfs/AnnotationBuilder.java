@@ -21,11 +21,13 @@ import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.history.VcsFileRevision;
 import com.intellij.util.diff.Diff;
 import com.intellij.util.diff.FilesTooBigForDiffException;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSFileRevision;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public class AnnotationBuilder {
 
@@ -33,13 +35,33 @@ public class AnnotationBuilder {
     String getContent(TFSFileRevision revision) throws VcsException;
   }
 
+  /**
+   * Stores annotations computed earlier, so that annotating a newer revision only needs to go back to the cached one
+   */
+  public interface AnnotationCache {
+    /**
+     * @return changesets the lines of the revision were introduced in or <code>null</code> if the revision is not cached
+     */
+    @Nullable
+    int[] getLineChangesets(TFSFileRevision revision);
+
+    void putLineChangesets(TFSFileRevision revision, int[] lineChangesets);
+  }
+
+  private static final int NOT_IN_ANNOTATED = -1;
+
   private final String myAnnotatedContent;
-  private final VcsFileRevision[] myLineRevisions;
+  private final TFSFileRevision[] myLineRevisions;
+  private int myNotAnnotatedCount;
 
-  // index of the stored record is the line number in the old revision of the file (which changes while we analyse different revisions),
-  // stored Integer is the corresponding line number in the revision which is being annotated. It is in range [0..myLineRevisions.size() - 1]
-  // and may be null if this line in old file does not appear in annotated file.
-  private final List<Integer> myLineNumbers;
+  // index is the line number in the old revision of the file (which changes while we analyse different revisions),
+  // value is the corresponding line number in the revision which is being annotated or NOT_IN_ANNOTATED
+  // if this line in old file does not appear in annotated file.
+  private int[] myLineNumbers;
+
+  public AnnotationBuilder(List<TFSFileRevision> revisions, ContentProvider contentProvider) throws VcsException {
+    this(revisions, contentProvider, null);
+  }
 
   /**
    * @param revisions       sorted list containing revisions of the annotated file.
@@ -47,24 +69,34 @@ public class AnnotationBuilder {
    *                        other list elements (if any) must give all file revisions which are older than the annotated one.
    * @param contentProvider delegate providing file content. {@link ContentProvider#getContent(TFSFileRevision)} method of provided object
    *                        is called only for specified {@code revisions}
+   * @param cache           if not null, used to stop at an already annotated revision and to store the result
    */
-  public AnnotationBuilder(List<TFSFileRevision> revisions, ContentProvider contentProvider) throws VcsException {
+  public AnnotationBuilder(List<TFSFileRevision> revisions, ContentProvider contentProvider, @Nullable AnnotationCache cache)
+    throws VcsException {
     if (revisions == null || revisions.size() < 1) {
       throw new IllegalArgumentException();
     }
 
     final Iterator<TFSFileRevision> iterator = revisions.iterator();
     TFSFileRevision revision = iterator.next();
+    final TFSFileRevision annotatedRevision = revision;
     myAnnotatedContent = contentProvider.getContent(revision);
     String[] lines = splitLines(myAnnotatedContent);
 
-    myLineRevisions = new VcsFileRevision[lines.length];
-    myLineNumbers = new ArrayList<>(lines.length);
+    myLineRevisions = new TFSFileRevision[lines.length];
+    myNotAnnotatedCount = lines.length;
+    myLineNumbers = new int[lines.length];
     for (int i = 0; i < lines.length; i++) {
-      myLineNumbers.add(i);
+      myLineNumbers[i] = i;
     }
 
-    while (iterator.hasNext()) {
+    while (!allLinesAnnotated()) {
+      if (cache != null && annotateFromCache(cache.getLineChangesets(revision), lines.length, revisions)) {
+        break;
+      }
+      if (!iterator.hasNext()) {
+        break;
+      }
       final TFSFileRevision previousRevision = iterator.next();
       final String previousContent = contentProvider.getContent(previousRevision);
       final String[] previousLines = splitLines(previousContent);
@@ -76,74 +108,89 @@ public class AnnotationBuilder {
         throw new VcsException(e);
       }
 
-      annotateAll(change, revision);
-      if (allLinesAnnotated()) {
-        break;
-      }
+      annotateAll(change, revision, previousLines.length);
       lines = previousLines;
       revision = previousRevision;
     }
 
     fillAllNotAnnotated(revisions.get(revisions.size() - 1));
-  }
 
-  private void annotateAll(final Diff.Change changesList, final VcsFileRevision revision) {
-    Diff.Change change = changesList;
-    while (change != null) {
-      annotate(change, revision);
-      change = change.link;
+    if (cache != null) {
+      int[] lineChangesets = new int[myLineRevisions.length];
+      for (int i = 0; i < myLineRevisions.length; i++) {
+        lineChangesets[i] = myLineRevisions[i].getRevisionNumber().getValue();
+      }
+      cache.putLineChangesets(annotatedRevision, lineChangesets);
     }
-    recalculateLineNumbers(changesList);
   }
 
-  private void annotate(final Diff.Change change, VcsFileRevision revision) {
-    if (change.inserted > 0) {
-      for (int line = change.line1; line < change.line1 + change.inserted; line++) {
-        Integer origLine = myLineNumbers.get(line);
-        if (origLine != null) {
-          if (myLineRevisions[origLine.intValue()] == null) {
-            myLineRevisions[origLine.intValue()] = revision;
-          }
-        }
+  /**
+   * Annotates the lines that come from the revision using its cached annotation
+   *
+   * @return false if the cached annotation is missing or does not match the revision
+   */
+  private boolean annotateFromCache(@Nullable int[] lineChangesets, int linesCount, List<TFSFileRevision> revisions) {
+    if (lineChangesets == null || lineChangesets.length != linesCount) {
+      return false;
+    }
+    final Map<Integer, TFSFileRevision> changeset2revision = new HashMap<>(revisions.size());
+    for (TFSFileRevision revision : revisions) {
+      changeset2revision.put(revision.getRevisionNumber().getValue(), revision);
+    }
+    for (int changeset : lineChangesets) {
+      if (!changeset2revision.containsKey(changeset)) {
+        return false;
       }
     }
+
+    for (int line = 0; line < linesCount; line++) {
+      annotate(myLineNumbers[line], changeset2revision.get(lineChangesets[line]));
+    }
+    return true;
   }
 
-  private void recalculateLineNumbers(final Diff.Change changesList) {
-    Diff.Change change = changesList;
-    int removedLinesCount = 0;
-    while (change != null) {
+  /**
+   * Annotates lines inserted by the change list and maps the line numbers onto the previous revision in a single pass
+   */
+  private void annotateAll(final Diff.Change changesList, final TFSFileRevision revision, int previousLinesCount) {
+    final int[] previousLineNumbers = new int[previousLinesCount];
+    int previousLine = 0;
+    int line = 0;
+    for (Diff.Change change = changesList; change != null; change = change.link) {
+      while (previousLine < change.line0) {
+        previousLineNumbers[previousLine++] = myLineNumbers[line++];
+      }
       for (int i = 0; i < change.inserted; i++) {
-        myLineNumbers.remove(change.line1 - removedLinesCount);
+        annotate(myLineNumbers[line++], revision);
       }
-      removedLinesCount += change.inserted;
-      change = change.link;
-    }
-
-    change = changesList;
-    while (change != null) {
       for (int i = 0; i < change.deleted; i++) {
-        myLineNumbers.add(change.line0, null);
+        previousLineNumbers[previousLine++] = NOT_IN_ANNOTATED;
       }
-      change = change.link;
     }
+    while (previousLine < previousLinesCount) {
+      previousLineNumbers[previousLine++] = myLineNumbers[line++];
+    }
+    myLineNumbers = previousLineNumbers;
   }
 
-  private boolean allLinesAnnotated() {
-    for (VcsFileRevision revision : myLineRevisions) {
-      if (revision == null) {
-        return false;
-      }
+  private void annotate(int annotatedLine, TFSFileRevision revision) {
+    if (annotatedLine != NOT_IN_ANNOTATED && myLineRevisions[annotatedLine] == null) {
+      myLineRevisions[annotatedLine] = revision;
+      myNotAnnotatedCount--;
     }
-    return true;
   }
 
-  private void fillAllNotAnnotated(final VcsFileRevision vcsFileRevision) {
+  private boolean allLinesAnnotated() {
+    return myNotAnnotatedCount == 0;
+  }
+
+  private void fillAllNotAnnotated(final TFSFileRevision revision) {
     for (int i = 0; i < myLineRevisions.length; i++) {
       if (myLineRevisions[i] == null) {
-        myLineRevisions[i] = vcsFileRevision;
+        myLineRevisions[i] = revision;
       }
     }
+    myNotAnnotatedCount = 0;
   }
 
   // TODO replace this with utility method
@@ -0,0 +1,530 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.DigestUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Items of a local workspace as they were after the last get or check in: server item, version, length, time stamp and MD5 of
+ * every file, so that status can be found without asking the server. Only paths under roots reconciled with the server are
+ * answered from here, see {@link StatusProvider#visitByStatusLocally}.
+ * <p/>
+ * Kept under the IDE system directory, one binary file per workspace.
+ */
+public class LocalBaseline {
+  private static final Logger LOG = Logger.getInstance(LocalBaseline.class.getName());
+
+  public static final boolean ENABLED = Boolean.getBoolean("org.jetbrains.tfsIntegration.offlineStatus");
+  // reconciled roots are checked against the server again after this time, unless the server can't be reached
+  private static final long RECONCILE_INTERVAL_MS =
+    Long.getLong("org.jetbrains.tfsIntegration.offlineStatusReconcileInterval", 30 * 60 * 1000);
+
+  @NonNls private static final String STORE_DIR = "tfs-baselines";
+  // baselines of version 1 took hashes of reconciled items from local files
+  private static final int FORMAT_VERSION = 2;
+  private static final long UNKNOWN = -1;
+
+  // keyed by workspace key, guarded by itself
+  private static final Map<String, LocalBaseline> ourInstances = new HashMap<>();
+
+  public static class Entry {
+    @NotNull public final String localPath;
+    @NotNull public final String serverItem;
+    public final int itemId;
+    public final int version;
+    public final boolean isDirectory;
+    // length and time stamp of the local file when its content was known to match the hash, UNKNOWN if not checked yet
+    public final long length;
+    public final long timestamp;
+    // MD5 of the content on the server, null if not known
+    @Nullable public final byte[] md5;
+
+    Entry(@NotNull String localPath,
+          @NotNull String serverItem,
+          int itemId,
+          int version,
+          boolean isDirectory,
+          long length,
+          long timestamp,
+          @Nullable byte[] md5) {
+      this.localPath = localPath;
+      this.serverItem = serverItem;
+      this.itemId = itemId;
+      this.version = version;
+      this.isDirectory = isDirectory;
+      this.length = length;
+      this.timestamp = timestamp;
+      this.md5 = md5;
+    }
+
+    Entry withStamp(long length, long timestamp) {
+      return new Entry(localPath, serverItem, itemId, version, isDirectory, length, timestamp, md5);
+    }
+  }
+
+  private final File myFile;
+  // keyed by path key, guarded by this
+  private final TreeMap<String, Entry> myEntries = new TreeMap<>();
+  // time of last reconcile by path key of root, guarded by this
+  private final Map<String, Long> myRoots = new HashMap<>();
+  private boolean myChanged;
+  // serializes writes of the file, taken before this
+  private final Object mySaveLock = new Object();
+
+  private LocalBaseline(File file) {
+    myFile = file;
+  }
+
+  public static LocalBaseline getInstance(@NotNull WorkspaceInfo workspace) {
+    String key = getWorkspaceKey(workspace);
+    synchronized (ourInstances) {
+      LocalBaseline baseline = ourInstances.get(key);
+      if (baseline == null) {
+        baseline = open(new File(new File(PathManager.getSystemPath(), STORE_DIR), key));
+        ourInstances.put(key, baseline);
+      }
+      return baseline;
+    }
+  }
+
+  /**
+   * @return baseline stored in the file given, empty if the file does not exist or can't be read
+   */
+  public static LocalBaseline open(@NotNull File file) {
+    LocalBaseline baseline = new LocalBaseline(file);
+    baseline.load();
+    return baseline;
+  }
+
+  /**
+   * @param allowStale if true, roots reconciled longer than {@link #RECONCILE_INTERVAL_MS} ago are accepted as well
+   */
+  public synchronized boolean isReconciled(@NotNull FilePath path, boolean allowStale) {
+    long now = System.currentTimeMillis();
+    for (File file = path.getIOFile(); file != null; file = file.getParentFile()) {
+      Long time = myRoots.get(StatusProvider.getPathKey(file));
+      if (time != null && (allowStale || now - time < RECONCILE_INTERVAL_MS)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  public synchronized Entry get(@NotNull FilePath path) {
+    return myEntries.get(StatusProvider.getPathKey(path));
+  }
+
+  public synchronized List<Entry> getEntriesUnder(@NotNull FilePath root) {
+    String rootKey = StatusProvider.getPathKey(root);
+    List<Entry> result = new ArrayList<>(getChildEntries(rootKey).values());
+    ContainerUtil.addIfNotNull(result, myEntries.get(rootKey));
+    return result;
+  }
+
+  // should be called under this
+  private SortedMap<String, Entry> getChildEntries(String rootKey) {
+    String prefix = rootKey.endsWith(File.separator) ? rootKey : rootKey + File.separator;
+    return myEntries.subMap(prefix, prefix + Character.MAX_VALUE);
+  }
+
+  // should be called under this
+  private void removeEntriesUnder(String rootKey) {
+    getChildEntries(rootKey).clear();
+    myEntries.remove(rootKey);
+  }
+
+  /**
+   * @return true if content of the local file differs from the one it had after the last get or check in. Files are compared
+   *         by length and time stamp first, MD5 is calculated only if they differ. Files whose content on the server is not
+   *         known are reported modified once their length or time stamp differs from the recorded one.
+   */
+  public boolean isModified(@NotNull Entry entry) {
+    if (entry.isDirectory) {
+      return false;
+    }
+    File file = new File(entry.localPath);
+    long length = file.length();
+    long timestamp = file.lastModified();
+    if (length == entry.length && timestamp == entry.timestamp) {
+      return false;
+    }
+    if (entry.md5 == null) {
+      // content is not known
+      return true;
+    }
+    if (entry.length != UNKNOWN && length != entry.length) {
+      return true;
+    }
+    byte[] md5 = calculateMD5(file);
+    if (!Arrays.equals(md5, entry.md5)) {
+      return true;
+    }
+    // same content, remember the new time stamp not to hash the file again
+    synchronized (this) {
+      String key = StatusProvider.getPathKey(file);
+      if (myEntries.get(key) == entry) {
+        myEntries.put(key, entry.withStamp(length, timestamp));
+        myChanged = true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return paths of files modified since the last get or check in that have no pending change. Such edits are found by
+   *         offline status only and should be pended before check in.
+   */
+  public List<ItemPath> findUnpendedEdits(@NotNull Collection<ItemPath> paths, @NotNull Collection<PendingChange> pendingChanges) {
+    Set<String> pending = new HashSet<>(pendingChanges.size());
+    for (PendingChange pendingChange : pendingChanges) {
+      String localPath = VersionControlPath.localPathFromTfsRepresentation(pendingChange.getLocal());
+      if (localPath != null) {
+        pending.add(StatusProvider.getPathKey(new File(localPath)));
+      }
+    }
+    List<ItemPath> result = new ArrayList<>();
+    for (ItemPath path : paths) {
+      if (pending.contains(StatusProvider.getPathKey(path.getLocalPath()))) {
+        continue;
+      }
+      Entry entry = get(path.getLocalPath());
+      if (entry != null && path.getLocalPath().getIOFile().isFile() && isModified(entry)) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Replaces entries under the roots with the items reported by the server and marks the roots as reconciled.
+   * Local files are not trusted since they may have edits not pended yet: hashes of files are taken from the server and
+   * requested only for items not known with the same version and hash already.
+   *
+   * @param serverHashes loads MD5 of files at the versions the workspace has by item id
+   */
+  public void reconcile(@NotNull List<? extends ItemPath> roots,
+                        @NotNull Collection<ExtendedItem> items,
+                        @NotNull ThrowableComputable<Map<Integer, byte[]>, TfsException> serverHashes) throws TfsException {
+    Map<String, Entry> oldEntries = new HashMap<>();
+    synchronized (this) {
+      for (ItemPath root : roots) {
+        String rootKey = StatusProvider.getPathKey(root.getLocalPath());
+        oldEntries.putAll(getChildEntries(rootKey));
+        Entry rootEntry = myEntries.get(rootKey);
+        if (rootEntry != null) {
+          oldEntries.put(rootKey, rootEntry);
+        }
+      }
+    }
+
+    Map<String, Entry> newEntries = new HashMap<>();
+    Map<String, ExtendedItem> files = new HashMap<>();
+    for (ExtendedItem item : items) {
+      if (item.getLocal() == null || item.getLver() == Integer.MIN_VALUE) {
+        // not downloaded or not checked in yet
+        continue;
+      }
+      String localPath = VersionControlPath.localPathFromTfsRepresentation(item.getLocal());
+      String key = StatusProvider.getPathKey(new File(localPath));
+      if (!isUnderAny(key, roots)) {
+        continue;
+      }
+      Entry old = oldEntries.get(key);
+      if (old != null && old.itemId == item.getItemid() && old.version == item.getLver() && (old.isDirectory || old.md5 != null)) {
+        newEntries.put(key, old);
+      }
+      else if (item.getType() == ItemType.Folder) {
+        newEntries.put(key, new Entry(localPath, item.getTitem(), item.getItemid(), item.getLver(), true, UNKNOWN, UNKNOWN, null));
+      }
+      else {
+        files.put(key, item);
+      }
+    }
+
+    if (!files.isEmpty()) {
+      Map<Integer, byte[]> hashes = serverHashes.compute();
+      for (Map.Entry<String, ExtendedItem> file : files.entrySet()) {
+        ExtendedItem item = file.getValue();
+        String localPath = VersionControlPath.localPathFromTfsRepresentation(item.getLocal());
+        newEntries.put(file.getKey(), new Entry(localPath, item.getTitem(), item.getItemid(), item.getLver(), false, UNKNOWN, UNKNOWN,
+                                                hashes.get(item.getItemid())));
+      }
+    }
+
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      for (ItemPath root : roots) {
+        String rootKey = StatusProvider.getPathKey(root.getLocalPath());
+        removeEntriesUnder(rootKey);
+        // nested roots are covered by this one now
+        for (Iterator<String> i = myRoots.keySet().iterator(); i.hasNext(); ) {
+          if (isUnder(i.next(), rootKey)) {
+            i.remove();
+          }
+        }
+        myRoots.put(rootKey, now);
+      }
+      myEntries.putAll(newEntries);
+      myChanged = true;
+    }
+  }
+
+  /**
+   * Updates entries for get operations that were applied to local files.
+   */
+  public void update(@NotNull Collection<GetOperation> operations) {
+    List<Entry> newEntries = new ArrayList<>();
+    Collection<String> removed = new ArrayList<>();
+    Collection<String> movedFolders = new ArrayList<>();
+    for (GetOperation operation : operations) {
+      String source = VersionControlPath.localPathFromTfsRepresentation(operation.getSlocal());
+      String target = VersionControlPath.localPathFromTfsRepresentation(operation.getTlocal());
+      boolean isDirectory = operation.getType() == ItemType.Folder;
+      if (source != null && !source.equals(target)) {
+        removed.add(source);
+        if (isDirectory && target != null) {
+          movedFolders.add(source);
+        }
+      }
+      if (target == null) {
+        continue;
+      }
+      if (operation.getSver() == Integer.MIN_VALUE || operation.getSver() == 0) {
+        // scheduled for addition
+        removed.add(target);
+      }
+      else if (isDirectory) {
+        newEntries.add(new Entry(target, operation.getTitem(), operation.getItemid(), operation.getSver(), true, UNKNOWN, UNKNOWN, null));
+      }
+      else {
+        // local content may differ if it was kept on get, so let it be checked on the first status refresh
+        byte[] hash = TfsFileUtil.getHashValue(operation.getHashValue());
+        newEntries.add(new Entry(target, operation.getTitem(), operation.getItemid(), operation.getSver(), false, UNKNOWN, UNKNOWN, hash));
+      }
+    }
+
+    synchronized (this) {
+      for (String path : removed) {
+        myEntries.remove(StatusProvider.getPathKey(new File(path)));
+      }
+      if (!movedFolders.isEmpty()) {
+        // children moved along with the folders are not reported, let them be reconciled again
+        for (String path : movedFolders) {
+          removeEntriesUnder(StatusProvider.getPathKey(new File(path)));
+        }
+        myRoots.clear();
+      }
+      for (Entry entry : newEntries) {
+        myEntries.put(StatusProvider.getPathKey(new File(entry.localPath)), entry);
+      }
+      myChanged = true;
+    }
+  }
+
+  /**
+   * Updates entries for pending changes checked in as the changeset given.
+   */
+  public void checkedIn(@NotNull Collection<PendingChange> pendingChanges, int changeset) {
+    Collection<Integer> removed = new HashSet<>();
+    List<Entry> newEntries = new ArrayList<>();
+    boolean folderRenamed = false;
+    for (PendingChange pendingChange : pendingChanges) {
+      removed.add(pendingChange.getItemid());
+      ChangeTypeMask change = new ChangeTypeMask(pendingChange.getChg());
+      boolean isDirectory = pendingChange.getType() == ItemType.Folder;
+      String localPath = VersionControlPath.localPathFromTfsRepresentation(pendingChange.getLocal());
+      if (change.contains(ChangeType_type0.Delete) || localPath == null) {
+        continue;
+      }
+      if (isDirectory) {
+        folderRenamed |= change.contains(ChangeType_type0.Rename);
+        newEntries.add(new Entry(localPath, pendingChange.getItem(), pendingChange.getItemid(), changeset, true, UNKNOWN, UNKNOWN, null));
+      }
+      else {
+        // the content checked in is the local one just uploaded
+        newEntries.add(createEntry(localPath, pendingChange.getItem(), pendingChange.getItemid(), changeset));
+      }
+    }
+
+    synchronized (this) {
+      myEntries.values().removeIf(entry -> removed.contains(entry.itemId));
+      if (folderRenamed) {
+        // children of renamed folders are not reported, let them be reconciled again
+        myRoots.clear();
+      }
+      for (Entry entry : newEntries) {
+        myEntries.put(StatusProvider.getPathKey(new File(entry.localPath)), entry);
+      }
+      myChanged = true;
+    }
+  }
+
+  private static Entry createEntry(String localPath, String serverItem, int itemId, int version) {
+    File file = new File(localPath);
+    long length = file.length();
+    long timestamp = file.lastModified();
+    byte[] md5 = file.isFile() ? calculateMD5(file) : null;
+    return new Entry(localPath, serverItem, itemId, version, false, md5 != null ? length : UNKNOWN, md5 != null ? timestamp : UNKNOWN, md5);
+  }
+
+  @Nullable
+  private static byte[] calculateMD5(File file) {
+    try {
+      return TfsFileUtil.calculateMD5(file);
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static boolean isUnderAny(String key, List<? extends ItemPath> roots) {
+    for (ItemPath root : roots) {
+      if (isUnder(key, StatusProvider.getPathKey(root.getLocalPath()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean isUnder(String key, String rootKey) {
+    return key.equals(rootKey) || key.startsWith(rootKey.endsWith(File.separator) ? rootKey : rootKey + File.separator);
+  }
+
+  private static String getWorkspaceKey(WorkspaceInfo workspace) {
+    String id = workspace.getServer().getUri() + "|" + StringUtil.toLowerCase(workspace.getName()) + "|" +
+                StringUtil.toLowerCase(workspace.getOwnerName());
+    return StringUtil.toHexString(DigestUtil.md5().digest(id.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Writes the baseline if it was changed since the last save. Changes are kept in memory until then, the change provider
+   * saves them once per refresh.
+   */
+  public void save() {
+    synchronized (mySaveLock) {
+      Map<String, Long> roots;
+      Collection<Entry> entries;
+      synchronized (this) {
+        if (!myChanged) {
+          return;
+        }
+        roots = new HashMap<>(myRoots);
+        entries = new ArrayList<>(myEntries.values());
+        myChanged = false;
+      }
+      if (!write(roots, entries)) {
+        synchronized (this) {
+          myChanged = true;
+        }
+      }
+    }
+  }
+
+  private boolean write(Map<String, Long> roots, Collection<Entry> entries) {
+    try {
+      FileUtil.createParentDirs(myFile);
+      File temp = FileUtil.createTempFile(myFile.getParentFile(), myFile.getName(), null, true);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(roots.size());
+        for (Map.Entry<String, Long> root : roots.entrySet()) {
+          out.writeUTF(root.getKey());
+          out.writeLong(root.getValue());
+        }
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+          out.writeUTF(entry.localPath);
+          out.writeUTF(entry.serverItem);
+          out.writeInt(entry.itemId);
+          out.writeInt(entry.version);
+          out.writeBoolean(entry.isDirectory);
+          out.writeLong(entry.length);
+          out.writeLong(entry.timestamp);
+          if (entry.md5 != null) {
+            out.writeByte(entry.md5.length);
+            out.write(entry.md5);
+          }
+          else {
+            out.writeByte(0);
+          }
+        }
+      }
+      FileUtil.rename(temp, myFile);
+      return true;
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to save local baseline " + myFile.getPath(), e);
+      return false;
+    }
+  }
+
+  private void load() {
+    if (!myFile.isFile()) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return;
+      }
+      int rootCount = in.readInt();
+      for (int i = 0; i < rootCount; i++) {
+        String key = in.readUTF();
+        myRoots.put(key, in.readLong());
+      }
+      int entryCount = in.readInt();
+      for (int i = 0; i < entryCount; i++) {
+        String localPath = in.readUTF();
+        String serverItem = in.readUTF();
+        int itemId = in.readInt();
+        int version = in.readInt();
+        boolean isDirectory = in.readBoolean();
+        long length = in.readLong();
+        long timestamp = in.readLong();
+        byte[] md5 = null;
+        int md5Length = in.readUnsignedByte();
+        if (md5Length > 0) {
+          md5 = new byte[md5Length];
+          in.readFully(md5);
+        }
+        myEntries.put(StatusProvider.getPathKey(new File(localPath)),
+                      new Entry(localPath, serverItem, itemId, version, isDirectory, length, timestamp, md5));
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Failed to load local baseline " + myFile.getPath(), e);
+      myRoots.clear();
+      myEntries.clear();
+    }
+  }
+}
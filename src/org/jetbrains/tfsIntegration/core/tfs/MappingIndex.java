@@ -0,0 +1,177 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.FilePath;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Working folders of workspaces arranged by components of their local paths, so that mappings of a local path are found
+ * by walking down the path instead of checking every working folder of every workspace.
+ */
+class MappingIndex {
+
+  static class WorkspaceMappings {
+    @NotNull final WorkspaceInfo workspace;
+    // working folders containing the path, outer ones first
+    final List<WorkingFolderInfo> parentMappings = new ArrayList<>();
+    // working folders under the path, only collected if child mappings are considered
+    final List<WorkingFolderInfo> childMappings = new ArrayList<>();
+
+    WorkspaceMappings(@NotNull WorkspaceInfo workspace) {
+      this.workspace = workspace;
+    }
+
+    /**
+     * @return server path of the local path according to the nearest parent mapping
+     */
+    @Nullable
+    String getServerPath(FilePath localPath) {
+      for (int i = parentMappings.size() - 1; i >= 0; i--) {
+        String serverPath = parentMappings.get(i).getServerPathByLocalPath(localPath);
+        if (serverPath != null) {
+          return serverPath;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static class Mapping {
+    private final int myWorkspaceIndex;
+    private final WorkingFolderInfo myWorkingFolder;
+
+    Mapping(int workspaceIndex, WorkingFolderInfo workingFolder) {
+      myWorkspaceIndex = workspaceIndex;
+      myWorkingFolder = workingFolder;
+    }
+  }
+
+  private static class Node {
+    @Nullable private Map<String, Node> myChildren;
+    @Nullable private List<Mapping> myMappings;
+  }
+
+  private final List<WorkspaceInfo> myWorkspaces;
+  private final long myModificationCount;
+  private final Node myRoot = new Node();
+
+  MappingIndex(List<WorkspaceInfo> workspaces, long modificationCount) {
+    myWorkspaces = new ArrayList<>(workspaces);
+    myModificationCount = modificationCount;
+    for (int i = 0; i < myWorkspaces.size(); i++) {
+      for (WorkingFolderInfo workingFolder : myWorkspaces.get(i).getWorkingFoldersCached()) {
+        Node node = myRoot;
+        for (String component : getComponents(workingFolder.getLocalPath())) {
+          if (node.myChildren == null) {
+            node.myChildren = new HashMap<>();
+          }
+          node = node.myChildren.computeIfAbsent(component, c -> new Node());
+        }
+        if (node.myMappings == null) {
+          node.myMappings = new ArrayList<>(1);
+        }
+        node.myMappings.add(new Mapping(i, workingFolder));
+      }
+    }
+  }
+
+  boolean isUpToDate(List<WorkspaceInfo> workspaces, long modificationCount) {
+    if (modificationCount != myModificationCount || workspaces.size() != myWorkspaces.size()) {
+      return false;
+    }
+    for (int i = 0; i < workspaces.size(); i++) {
+      if (workspaces.get(i) != myWorkspaces.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return workspaces that have a working folder containing the local path (or under it if child mappings are considered),
+   *         in the order the workspaces were indexed
+   */
+  @NotNull
+  List<WorkspaceMappings> find(@NotNull FilePath localPath, boolean considerChildMappings) {
+    WorkspaceMappings[] result = new WorkspaceMappings[myWorkspaces.size()];
+    Node node = myRoot;
+    addMappings(node, result, true);
+    for (String component : getComponents(localPath)) {
+      node = node.myChildren != null ? node.myChildren.get(component) : null;
+      if (node == null) {
+        break;
+      }
+      addMappings(node, result, true);
+    }
+    if (considerChildMappings && node != null && node.myChildren != null) {
+      for (Node child : node.myChildren.values()) {
+        addChildMappings(child, result);
+      }
+    }
+
+    List<WorkspaceMappings> list = new ArrayList<>();
+    for (WorkspaceMappings mappings : result) {
+      if (mappings != null) {
+        list.add(mappings);
+      }
+    }
+    return list;
+  }
+
+  private void addChildMappings(Node node, WorkspaceMappings[] result) {
+    addMappings(node, result, false);
+    if (node.myChildren != null) {
+      for (Node child : node.myChildren.values()) {
+        addChildMappings(child, result);
+      }
+    }
+  }
+
+  private void addMappings(Node node, WorkspaceMappings[] result, boolean parent) {
+    if (node.myMappings == null) {
+      return;
+    }
+    for (Mapping mapping : node.myMappings) {
+      WorkspaceMappings mappings = result[mapping.myWorkspaceIndex];
+      if (mappings == null) {
+        mappings = new WorkspaceMappings(myWorkspaces.get(mapping.myWorkspaceIndex));
+        result[mapping.myWorkspaceIndex] = mappings;
+      }
+      (parent ? mappings.parentMappings : mappings.childMappings).add(mapping.myWorkingFolder);
+    }
+  }
+
+  private static List<String> getComponents(FilePath path) {
+    String systemIndependentPath = path.getPath();
+    if (!SystemInfo.isFileSystemCaseSensitive) {
+      systemIndependentPath = StringUtil.toLowerCase(systemIndependentPath);
+    }
+    List<String> result = new ArrayList<>();
+    for (String component : StringUtil.split(systemIndependentPath, "/")) {
+      if (!component.isEmpty()) {
+        result.add(component);
+      }
+    }
+    return result;
+  }
+}
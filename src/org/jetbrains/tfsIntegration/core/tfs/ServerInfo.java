@@ -16,6 +16,7 @@
 
 package org.jetbrains.tfsIntegration.core.tfs;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Workspace;
 import org.jetbrains.annotations.NotNull;
@@ -25,6 +26,7 @@ import org.jetbrains.tfsIntegration.core.configuration.Credentials;
 import org.jetbrains.tfsIntegration.core.configuration.TFSConfigurationManager;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 import org.jetbrains.tfsIntegration.exceptions.WorkspaceNotFoundException;
+import org.jetbrains.tfsIntegration.webservice.TfsRequestManager;
 
 import java.net.URI;
 import java.util.ArrayList;
@@ -117,6 +119,25 @@ public class ServerInfo {
     return myServer;
   }
 
+  /**
+   * Reads identity of the current user in background, so that work item queries and check in find it cached.
+   * Does nothing if the user would have to log in first.
+   */
+  public void prefetchIdentity(final Object projectOrComponent) {
+    final String username = getQualifiedUsername();
+    if (username == null || TfsRequestManager.shouldShowLoginDialog(myUri) || TFSConfigurationManager.getInstance().isAuthCanceled(myUri)) {
+      return;
+    }
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        getVCS().readIdentity(username, projectOrComponent, null);
+      }
+      catch (TfsException e) {
+        LOG.debug(e);
+      }
+    });
+  }
+
   public void refreshWorkspacesForCurrentOwnerAndComputer(Object projectOrComponent, boolean force) throws TfsException {
     Workspace[] newWorkspaces = getVCS().queryWorkspaces(Workstation.getComputerName(), projectOrComponent, force);
     String owner = getQualifiedUsername();
@@ -95,6 +95,10 @@ public abstract class ServerStatus {
       super(item);
     }
 
+    CheckedOutForEdit(final int localVer, final int itemId, final boolean isDirectory, final @NotNull String serverItem) {
+      super(localVer, itemId, isDirectory, serverItem, serverItem);
+    }
+
     @Override
     public void visitBy(final @NotNull FilePath localPath, final boolean localItemExists, final @NotNull StatusVisitor statusVisitor)
       throws TfsException {
@@ -151,6 +155,10 @@ public abstract class ServerStatus {
       super(extendedItem);
     }
 
+    UpToDate(final int localVer, final int itemId, final boolean isDirectory, final @NotNull String serverItem) {
+      super(localVer, itemId, isDirectory, serverItem, serverItem);
+    }
+
     @Override
     public void visitBy(final @NotNull FilePath localPath, final boolean localItemExists, final @NotNull StatusVisitor statusVisitor)
       throws TfsException {
@@ -16,7 +16,10 @@
 
 package org.jetbrains.tfsIntegration.core.tfs;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -36,6 +39,7 @@ import java.util.*;
 // Note: if item is renamed (moved), same local item and pending change reported by server for source and target names
 
 public class StatusProvider {
+  private static final Logger LOG = Logger.getInstance(StatusProvider.class.getName());
 
   public static void visitByStatus(final @NotNull WorkspaceInfo workspace,
                                    final List<? extends ItemPath> roots,
@@ -69,6 +73,23 @@ public class StatusProvider {
       extendedItems.put(extendedItem.getItemid(), extendedItem);
     }
 
+    // index server results by local path not to scan all of them for every local item
+    Map<String, PendingChange> pendingChangesByPath = new HashMap<>(pendingChanges.size());
+    for (PendingChange pendingChange : pendingChanges.values()) {
+      String key = getPathKey(pendingChange.getLocal());
+      if (key != null && !pendingChangesByPath.containsKey(key)) {
+        pendingChangesByPath.put(key, pendingChange);
+      }
+    }
+
+    Map<String, List<ExtendedItem>> extendedItemsByPath = new HashMap<>(extendedItems.size());
+    for (ExtendedItem extendedItem : extendedItems.values()) {
+      String key = getPathKey(extendedItem.getLocal());
+      if (key != null) {
+        extendedItemsByPath.computeIfAbsent(key, k -> new ArrayList<>(1)).add(extendedItem);
+      }
+    }
+
     TFSProgressUtil.checkCanceled(progress);
 
     for (ItemPath root : roots) {
@@ -82,26 +103,23 @@ public class StatusProvider {
       for (FilePath localItem : localItems) {
 
         ExtendedItem extendedItem = null;
-        PendingChange pendingChange = null;
-
-        // TODO: what is faster: to search throughout pending changes or extended items?
-
-        for (PendingChange candidate : pendingChanges.values()) {
-          if (equals(localItem, VersionControlPath.localPathFromTfsRepresentation(candidate.getLocal()))) {
-            extendedItem = extendedItems.remove(candidate.getItemid());
-            //TFSVcs.assertTrue(extendedItem != null, "pending change without extended item for " +
-            //                                        VersionControlPath.localPathFromTfsRepresentation(candidate.getLocal()));
-            // don't assert: if there's no item, we will get 'unversioned' status as a result
-            pendingChange = candidate;
-            break;
-          }
+        String localItemKey = getPathKey(localItem);
+
+        PendingChange pendingChange = pendingChangesByPath.get(localItemKey);
+        if (pendingChange != null) {
+          extendedItem = extendedItems.remove(pendingChange.getItemid());
+          // don't assert: if there's no item, we will get 'unversioned' status as a result
         }
 
         if (extendedItem == null) {
-          for (ExtendedItem candidate : extendedItems.values()) {
-            if (equals(localItem, VersionControlPath.localPathFromTfsRepresentation(candidate.getLocal()))) {
+          List<ExtendedItem> candidates = extendedItemsByPath.get(localItemKey);
+          if (candidates != null) {
+            for (ExtendedItem candidate : candidates) {
+              // skip items already matched
               extendedItem = extendedItems.remove(candidate.getItemid());
-              break;
+              if (extendedItem != null) {
+                break;
+              }
             }
           }
         }
@@ -126,9 +144,114 @@ public class StatusProvider {
           determineServerStatus(pendingChange, extendedItem).visitBy(localPath, false, statusVisitor);
         }
       }
+
+      if (LocalBaseline.ENABLED && workspace.isLocal()) {
+        // every item is visited already, so a failure here should not fail the status or make the caller visit them again
+        try {
+          LocalBaseline.getInstance(workspace).reconcile(
+            roots, extendedItemsAndPendingChanges.extendedItems,
+            () -> workspace.getServer().getVCS().queryWorkspaceItemHashes(workspace.getName(), workspace.getOwnerName(), itemSpecs,
+                                                                           projectOrComponent, TFSBundle.message("loading.changes")));
+        }
+        catch (TfsException e) {
+          LOG.info("Failed to reconcile local baseline of workspace " + workspace.getName(), e);
+        }
+      }
     }
   }
 
+  /**
+   * Same as {@link #visitByStatus} with recursion, but local files are compared with the {@link LocalBaseline} of the workspace
+   * instead of asking the server. Only pending changes of the whole workspace are requested, and not more often than they are
+   * cached by {@link VersionControlServer#getWorkspacePendingChanges}.
+   *
+   * @param allowStale if true, roots not reconciled with the server for a long time are processed as well
+   * @return false if some of the roots are not reconciled with the server yet, nothing is visited then
+   */
+  public static boolean visitByStatusLocally(final @NotNull WorkspaceInfo workspace,
+                                             final List<? extends ItemPath> roots,
+                                             boolean allowStale,
+                                             final @Nullable ProgressIndicator progress,
+                                             final @NotNull StatusVisitor statusVisitor,
+                                             Object projectOrComponent) throws TfsException {
+    if (!LocalBaseline.ENABLED || !workspace.isLocal()) {
+      return false;
+    }
+    LocalBaseline baseline = LocalBaseline.getInstance(workspace);
+    for (ItemPath root : roots) {
+      if (!baseline.isReconciled(root.getLocalPath(), allowStale)) {
+        return false;
+      }
+    }
+
+    Collection<PendingChange> pendingChanges = workspace.getServer().getVCS()
+      .getWorkspacePendingChanges(workspace.getName(), workspace.getOwnerName(), projectOrComponent, TFSBundle.message("loading.changes"));
+    Map<String, PendingChange> pendingChangesByPath = new HashMap<>(pendingChanges.size());
+    Set<Integer> pendingItemIds = new HashSet<>(pendingChanges.size());
+    for (PendingChange pendingChange : pendingChanges) {
+      pendingItemIds.add(pendingChange.getItemid());
+      String key = getPathKey(pendingChange.getLocal());
+      if (key != null && !pendingChangesByPath.containsKey(key)) {
+        pendingChangesByPath.put(key, pendingChange);
+      }
+    }
+
+    TFSProgressUtil.checkCanceled(progress);
+
+    for (ItemPath root : roots) {
+      Collection<FilePath> localItems = new HashSet<>();
+      localItems.add(root.getLocalPath());
+      addExistingFilesRecursively(localItems, root.getLocalPath().getVirtualFile());
+
+      Set<String> visited = new HashSet<>(localItems.size());
+      for (FilePath localItem : localItems) {
+        String localItemKey = getPathKey(localItem);
+        visited.add(localItemKey);
+        final boolean localItemExists = TfsFileUtil.localItemExists(localItem);
+
+        PendingChange pendingChange = pendingChangesByPath.get(localItemKey);
+        ServerStatus status = pendingChange != null ? determineServerStatus(pendingChange) : null;
+        if (status == null) {
+          LocalBaseline.Entry entry = baseline.get(localItem);
+          if (entry == null) {
+            status = ServerStatus.Unversioned.INSTANCE;
+          }
+          else {
+            if (!localItemExists) {
+              localItem = VcsUtil.getFilePath(localItem.getPath(), entry.isDirectory);
+            }
+            status = localItemExists && baseline.isModified(entry)
+                     ? new ServerStatus.CheckedOutForEdit(entry.version, entry.itemId, entry.isDirectory, entry.serverItem)
+                     : new ServerStatus.UpToDate(entry.version, entry.itemId, entry.isDirectory, entry.serverItem);
+          }
+        }
+        status.visitBy(localItem, localItemExists, statusVisitor);
+      }
+      TFSProgressUtil.checkCanceled(progress);
+
+      // then care about locally deleted
+      String rootKey = getPathKey(root.getLocalPath());
+      for (Map.Entry<String, PendingChange> entry : pendingChangesByPath.entrySet()) {
+        if (!visited.contains(entry.getKey()) && LocalBaseline.isUnder(entry.getKey(), rootKey)) {
+          PendingChange pendingChange = entry.getValue();
+          ServerStatus status = determineServerStatus(pendingChange);
+          if (status != null) {
+            FilePath localPath = VersionControlPath.getFilePath(pendingChange.getLocal(), pendingChange.getType() == ItemType.Folder);
+            status.visitBy(localPath, false, statusVisitor);
+          }
+        }
+      }
+      for (LocalBaseline.Entry entry : baseline.getEntriesUnder(root.getLocalPath())) {
+        // items with pending changes (e.g. renamed ones) are reported by their pending changes
+        if (!pendingItemIds.contains(entry.itemId) && !visited.contains(getPathKey(new File(entry.localPath)))) {
+          new ServerStatus.UpToDate(entry.version, entry.itemId, entry.isDirectory, entry.serverItem)
+            .visitBy(VcsUtil.getFilePath(entry.localPath, entry.isDirectory), false, statusVisitor);
+        }
+      }
+    }
+    return true;
+  }
+
   private static void addExistingFilesRecursively(final @NotNull Collection<? super FilePath> result, final @Nullable VirtualFile root) {
     if (root != null && root.exists()) {
       VfsUtilCore.visitChildrenRecursively(root, new VirtualFileVisitor<Void>() {
@@ -141,6 +264,37 @@ public class StatusProvider {
     }
   }
 
+  /**
+   * Same as {@link #determineServerStatus(PendingChange, ExtendedItem)} when there's no extended item at hand
+   *
+   * @return null if the pending change doesn't affect status of the item (e.g. lock)
+   */
+  @Nullable
+  private static ServerStatus determineServerStatus(final @NotNull PendingChange pendingChange) {
+    ChangeTypeMask change = new ChangeTypeMask(pendingChange.getChg());
+    change.remove(ChangeType_type0.None, ChangeType_type0.Lock);
+
+    if (change.containsAny(ChangeType_type0.Add, ChangeType_type0.Branch)) {
+      return new ServerStatus.ScheduledForAddition(pendingChange);
+    }
+    else if (change.contains(ChangeType_type0.Delete)) {
+      return new ServerStatus.ScheduledForDeletion(pendingChange);
+    }
+    else if (change.containsAny(ChangeType_type0.Edit, ChangeType_type0.Merge) && !change.contains(ChangeType_type0.Rename)) {
+      return new ServerStatus.CheckedOutForEdit(pendingChange);
+    }
+    else if (change.containsAny(ChangeType_type0.Merge, ChangeType_type0.Rename) && !change.contains(ChangeType_type0.Edit)) {
+      return new ServerStatus.Renamed(pendingChange);
+    }
+    else if (change.containsAll(ChangeType_type0.Rename, ChangeType_type0.Edit)) {
+      return new ServerStatus.RenamedCheckedOut(pendingChange);
+    }
+    else if (change.contains(ChangeType_type0.Undelete)) {
+      return new ServerStatus.Undeleted(pendingChange);
+    }
+    return null;
+  }
+
   private static ServerStatus determineServerStatus(final @Nullable PendingChange pendingChange, final @Nullable ExtendedItem item) {
     if (item == null) {
       return ServerStatus.Unversioned.INSTANCE;
@@ -237,12 +391,24 @@ public class StatusProvider {
     return null;
   }
 
-  private static boolean equals(FilePath path1, String path2) {
-    if (path2 == null) {
-      return path1 == null;
-    }
-    // compare regarding file system case sensitivity
-    return path1.getIOFile().equals(new File(path2));
+  /**
+   * @return key that is equal for paths pointing to the same {@link File}
+   */
+  @Nullable
+  private static String getPathKey(@Nullable String tfsLocalPath) {
+    String localPath = VersionControlPath.localPathFromTfsRepresentation(tfsLocalPath);
+    return localPath != null ? getPathKey(new File(localPath)) : null;
+  }
+
+  @NotNull
+  static String getPathKey(@NotNull FilePath path) {
+    return getPathKey(path.getIOFile());
+  }
+
+  @NotNull
+  static String getPathKey(@NotNull File file) {
+    // compare regarding file system case sensitivity, same as File.equals() does
+    return SystemInfo.isWindows ? StringUtil.toLowerCase(file.getPath()) : file.getPath();
   }
 
 }
@@ -17,12 +17,15 @@
 package org.jetbrains.tfsIntegration.core.tfs;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vcs.AbstractVcsHelper;
 import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -34,8 +37,11 @@ import org.jetbrains.tfsIntegration.exceptions.UserCancelledException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class TfsExecutionUtil {
+  private static final long POLL_INTERVAL_MS = 100;
 
   public static class ResultWithErrors<T> {
     public final List<VcsException> errors;
@@ -143,6 +149,10 @@ public class TfsExecutionUtil {
     void run() throws TfsException, VcsException;
   }
 
+  public interface ConcurrentTask {
+    void run() throws TfsException;
+  }
+
   public static <T> ResultWithErrors<T> executeInBackground(String progressText, Project project, final ProcessWithErrors<? extends T> process) {
     final Ref<T> result = new Ref<>();
     final List<VcsException> errors = new ArrayList<>();
@@ -207,4 +217,107 @@ public class TfsExecutionUtil {
     });
   }
 
+  public interface TimedAttempt<T> {
+    /**
+     * @return result or <code>null</code> if there is none within the timeout
+     */
+    @Nullable
+    T tryGet(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException;
+  }
+
+  /**
+   * Repeats the attempt until it gives a result, calling <code>checkCanceled</code> before each one. Interruption is reported
+   * as {@link ProcessCanceledException}; a failure of the computation is rethrown as is if it is unchecked, checked ones are
+   * wrapped in a <code>RuntimeException</code>.
+   */
+  @NotNull
+  public static <T> T waitFor(TimedAttempt<? extends T> attempt, Runnable checkCanceled) {
+    try {
+      while (true) {
+        checkCanceled.run();
+        T result = attempt.tryGet(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (result != null) {
+          return result;
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Waits for the future checking the current progress for cancellation, see {@link #waitFor(TimedAttempt, Runnable)}
+   */
+  @Nullable
+  public static <T> T waitFor(final Future<T> future) {
+    return waitFor((TimedAttempt<Ref<T>>)(timeout, unit) -> {
+      try {
+        return Ref.create(future.get(timeout, unit));
+      }
+      catch (TimeoutException e) {
+        return null;
+      }
+    }, ProgressManager::checkCanceled).get();
+  }
+
+  /**
+   * Runs the tasks on at most <code>parallelism</code> pooled threads under the current progress and waits for all of them.
+   * The first failure is rethrown and tasks not started yet are skipped. Tasks are run one by one in the calling thread
+   * if parallelism is 1 or the caller is the EDT.
+   */
+  public static void executeConcurrently(String name, int parallelism, Collection<? extends ConcurrentTask> tasks) throws TfsException {
+    if (parallelism <= 1 || tasks.size() <= 1 || ApplicationManager.getApplication().isDispatchThread()) {
+      for (ConcurrentTask task : tasks) {
+        ProgressManager.checkCanceled();
+        task.run();
+      }
+      return;
+    }
+
+    final ProgressIndicator pi = ProgressManager.getInstance().getProgressIndicator();
+    final AtomicReference<TfsException> error = new AtomicReference<>();
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(name, Math.min(parallelism, tasks.size()));
+    List<Future<?>> futures = new ArrayList<>(tasks.size());
+    for (final ConcurrentTask task : tasks) {
+      futures.add(executor.submit(() -> ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+        if (error.get() != null) {
+          return;
+        }
+        try {
+          task.run();
+        }
+        catch (TfsException e) {
+          error.compareAndSet(null, e);
+        }
+      }, pi)));
+    }
+
+    try {
+      for (Future<?> future : futures) {
+        waitFor(future);
+        if (error.get() != null) {
+          throw error.get();
+        }
+      }
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(false);
+      }
+      executor.shutdown();
+    }
+  }
+
 }
@@ -19,6 +19,7 @@ package org.jetbrains.tfsIntegration.core.tfs;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.actions.VcsContextFactory;
 import com.intellij.openapi.vcs.changes.VcsDirtyScopeManager;
@@ -30,9 +31,11 @@ import com.intellij.ui.GuiUtils;
 import com.intellij.util.io.DigestUtil;
 import com.intellij.util.io.ReadOnlyAttributeUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSVcs;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
+import javax.activation.DataHandler;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.security.MessageDigest;
@@ -92,29 +95,6 @@ public class TfsFileUtil {
     }
   }
 
-  private static void setReadOnly(final String path, final boolean status) throws IOException {
-    final Ref<IOException> exception = new Ref<>();
-    try {
-      GuiUtils.runOrInvokeAndWait(() -> {
-        try {
-          ReadOnlyAttributeUtil.setReadOnlyAttribute(path, status);
-        }
-        catch (IOException e) {
-          exception.set(e);
-        }
-      });
-    }
-    catch (InvocationTargetException e) {
-      // ignore
-    }
-    catch (InterruptedException e) {
-      // ignore
-    }
-    if (!exception.isNull()) {
-      throw exception.get();
-    }
-  }
-
   public static void markFileDirty(final Project project, final @NotNull FilePath file) {
     ApplicationManager.getApplication().runReadAction(() -> VcsDirtyScopeManager.getInstance(project).fileDirty(file));
   }
@@ -194,34 +174,6 @@ public class TfsFileUtil {
     }
   }
 
-  public static void setFileContent(final @NotNull File destination, final @NotNull ContentWriter contentWriter)
-    throws TfsException, IOException {
-    TFSVcs.assertTrue(!destination.isDirectory(), destination + " expected to be a file");
-    OutputStream fileStream = null;
-    try {
-      if (destination.exists() && !destination.canWrite()) {
-        setReadOnly(destination.getPath(), false);
-      }
-      fileStream = new FileOutputStream(destination);
-      contentWriter.write(fileStream);
-
-      // TODO need this?
-      //if (refreshVirtualFile) {
-      //  refreshVirtualFileContents(destination);
-      //}
-    }
-    finally {
-      if (fileStream != null) {
-        try {
-          fileStream.close();
-        }
-        catch (IOException e) {
-          // ignore
-        }
-      }
-    }
-  }
-
   public static boolean hasWritableChildFile(File file) {
     File[] files = file.listFiles();
     if (files != null) {
@@ -244,6 +196,24 @@ public class TfsFileUtil {
     return file != null && file.isValid() && file.exists();
   }
 
+  /**
+   * @return hash value sent by the server or <code>null</code> if it is missing
+   */
+  @Nullable
+  public static byte[] getHashValue(@Nullable DataHandler hash) {
+    if (hash == null) {
+      return null;
+    }
+    try (InputStream stream = hash.getInputStream()) {
+      byte[] result = FileUtil.loadBytes(stream);
+      return result.length > 0 ? result : null;
+    }
+    catch (IOException e) {
+      TFSVcs.LOG.warn("Failed to read hash value", e);
+      return null;
+    }
+  }
+
   public static byte[] calculateMD5(File file) throws IOException {
     final MessageDigest digest = DigestUtil.md5();
     InputStream is = null;
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ChangeType_type0;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.PendingChange;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.TFSProgressUtil;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.webservice.WebServiceHelper;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Uploads contents of pending changes before check in. Files are hashed on a pool sized by the number of processors and
+ * every hashed file is passed to a pool that keeps {@link WebServiceHelper#PARALLEL_TRANSFERS} uploads running.
+ */
+public class UploadPipeline {
+  private static final Logger LOG = Logger.getInstance(UploadPipeline.class.getName());
+
+
+  private static class Upload {
+    private final PendingChange myChange;
+    @Nullable private volatile Exception myError;
+    private volatile boolean myCancelled;
+    private volatile boolean myUnchanged;
+
+    Upload(PendingChange change) {
+      myChange = change;
+    }
+  }
+
+  /**
+   * Returns after every upload is acknowledged by the server. Stops at the first failure, uploads not yet started are dropped.
+   * Files whose content is the same as the one the server already has are not uploaded.
+   *
+   * @return pending changes that were not uploaded since the content is not changed
+   */
+  public static Collection<PendingChange> upload(final WorkspaceInfo workspace,
+                                                 final Collection<PendingChange> changes,
+                                                 final Object projectOrComponent)
+    throws TfsException, IOException, VcsException {
+    final ProgressIndicator pi = ProgressManager.getInstance().getProgressIndicator();
+    final Collection<PendingChange> unchanged = new ArrayList<>();
+    if (WebServiceHelper.PARALLEL_TRANSFERS <= 1 || changes.size() <= 1 || ApplicationManager.getApplication().isDispatchThread()) {
+      for (PendingChange change : changes) {
+        TFSProgressUtil.setProgressText2(pi, VersionControlPath.localPathFromTfsRepresentation(change.getLocal()));
+        byte[] hash = null;
+        if (hasServerHash(change)) {
+          hash = TfsFileUtil.calculateMD5(VersionControlPath.getFile(change.getLocal()));
+          if (!isUploadNeeded(change, hash)) {
+            if (isUnchanged(change, hash)) {
+              unchanged.add(change);
+            }
+            continue;
+          }
+        }
+        workspace.getServer().getVCS().uploadItem(workspace, change, hash, projectOrComponent, null);
+      }
+      return unchanged;
+    }
+
+    final ExecutorService hashing =
+      AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS upload hashing", Runtime.getRuntime().availableProcessors());
+    final ExecutorService uploading =
+      AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS uploads", WebServiceHelper.PARALLEL_TRANSFERS);
+    final BlockingQueue<Upload> completed = new LinkedBlockingQueue<>();
+
+    try {
+      for (PendingChange change : changes) {
+        final Upload upload = new Upload(change);
+        hashing.execute(() -> {
+          // the upload is reported completed here unless it is passed to the uploading pool
+          boolean submitted = false;
+          try {
+            final byte[] hash = TfsFileUtil.calculateMD5(VersionControlPath.getFile(upload.myChange.getLocal()));
+            if (!isUploadNeeded(upload.myChange, hash)) {
+              upload.myUnchanged = isUnchanged(upload.myChange, hash);
+              return;
+            }
+            uploading.execute(() -> {
+              try {
+                ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+                  try {
+                    workspace.getServer().getVCS().uploadItem(workspace, upload.myChange, hash, projectOrComponent, null);
+                  }
+                  catch (TfsException | IOException e) {
+                    upload.myError = e;
+                  }
+                  catch (ProcessCanceledException e) {
+                    upload.myCancelled = true;
+                  }
+                }, pi);
+              }
+              catch (RuntimeException e) {
+                LOG.warn(e);
+                upload.myError = new IOException(e.getMessage(), e);
+              }
+              finally {
+                completed.add(upload);
+              }
+            });
+            submitted = true;
+          }
+          catch (IOException e) {
+            upload.myError = e;
+          }
+          catch (RuntimeException e) {
+            LOG.warn(e);
+            String path = VersionControlPath.localPathFromTfsRepresentation(upload.myChange.getLocal());
+            upload.myError = new VcsException(MessageFormat.format("Cannot upload file ''{0}'': {1}", path, e.getMessage()), e);
+          }
+          finally {
+            if (!submitted) {
+              completed.add(upload);
+            }
+          }
+        });
+      }
+
+      int done = 0;
+      while (done < changes.size()) {
+        Upload upload = TfsExecutionUtil.waitFor(completed::poll, () -> TFSProgressUtil.checkCanceled(pi));
+        done++;
+        if (upload.myCancelled) {
+          throw new ProcessCanceledException();
+        }
+        Exception error = upload.myError;
+        if (error instanceof TfsException) {
+          throw (TfsException)error;
+        }
+        if (error instanceof IOException) {
+          throw (IOException)error;
+        }
+        if (error instanceof VcsException) {
+          throw (VcsException)error;
+        }
+        if (upload.myUnchanged) {
+          unchanged.add(upload.myChange);
+        }
+        TFSProgressUtil.setProgressText2(pi, VersionControlPath.localPathFromTfsRepresentation(upload.myChange.getLocal()));
+        if (pi != null) {
+          pi.setFraction((double)done / changes.size());
+        }
+      }
+      return unchanged;
+    }
+    finally {
+      hashing.shutdownNow();
+      uploading.shutdownNow();
+    }
+  }
+
+  private static boolean hasServerHash(PendingChange change) {
+    return change.getUhash() != null || (change.getHash() != null && isEditOfExistingItem(change));
+  }
+
+  /**
+   * @return false if the same content was uploaded already, or nothing was uploaded yet and the file was checked out for edit
+   *         and not modified
+   */
+  private static boolean isUploadNeeded(PendingChange change, byte[] localHash) {
+    byte[] uploadedHash = TfsFileUtil.getHashValue(change.getUhash());
+    if (uploadedHash != null) {
+      // the uploaded content is what gets checked in, so it is replaced unless it is the same
+      return !Arrays.equals(localHash, uploadedHash);
+    }
+    return !isUnchanged(change, localHash);
+  }
+
+  /**
+   * @return true if the file was checked out for edit and its content is the same as the base one
+   */
+  private static boolean isUnchanged(PendingChange change, byte[] localHash) {
+    return isEditOfExistingItem(change) && Arrays.equals(localHash, TfsFileUtil.getHashValue(change.getHash()));
+  }
+
+  private static boolean isEditOfExistingItem(PendingChange change) {
+    ChangeTypeMask changeType = new ChangeTypeMask(change.getChg());
+    return changeType.contains(ChangeType_type0.Edit) && !changeType.contains(ChangeType_type0.Add) &&
+           !changeType.contains(ChangeType_type0.Branch) && !changeType.contains(ChangeType_type0.Merge);
+  }
+}
@@ -16,9 +16,11 @@
 
 package org.jetbrains.tfsIntegration.core.tfs;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ApplicationNamesInfo;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.MessageType;
 import com.intellij.openapi.util.Pair;
@@ -26,7 +28,10 @@ import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.TimeoutUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.DigestUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.services.authorization._03.Identity;
 import com.microsoft.schemas.teamfoundation._2005._06.services.authorization._03.QueryMembership;
 import com.microsoft.schemas.teamfoundation._2005._06.services.authorization._03.SearchFactor;
@@ -36,6 +41,8 @@ import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservi
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.MergeOptions;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
 import com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.*;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.multipart.ByteArrayPartSource;
 import org.apache.commons.httpclient.methods.multipart.FilePart;
 import org.apache.commons.httpclient.methods.multipart.Part;
 import org.apache.commons.httpclient.methods.multipart.StringPart;
@@ -51,20 +58,35 @@ import org.jetbrains.tfsIntegration.core.configuration.TFSConfigurationManager;
 import org.jetbrains.tfsIntegration.core.tfs.version.ChangesetVersionSpec;
 import org.jetbrains.tfsIntegration.core.tfs.version.LatestVersionSpec;
 import org.jetbrains.tfsIntegration.core.tfs.version.VersionSpecBase;
+import org.jetbrains.tfsIntegration.core.tfs.version.WorkspaceVersionSpec;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemField;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemIds;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemSerialize;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsUpdatePackage;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsPager;
+import org.jetbrains.tfsIntegration.exceptions.ConnectionFailedException;
+import org.jetbrains.tfsIntegration.exceptions.ConnectionTimeoutException;
 import org.jetbrains.tfsIntegration.exceptions.HostNotApplicableException;
+import org.jetbrains.tfsIntegration.exceptions.HostNotFoundException;
+import org.jetbrains.tfsIntegration.exceptions.OperationFailedException;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.exceptions.UserCancelledException;
 import org.jetbrains.tfsIntegration.webservice.TfsRequestManager;
 import org.jetbrains.tfsIntegration.webservice.WebServiceHelper;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
 import java.rmi.RemoteException;
+import java.security.MessageDigest;
+import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class VersionControlServer {
   @NonNls public static final String WORKSPACE_NAME_FIELD = "wsname";
@@ -80,12 +102,79 @@ public class VersionControlServer {
 
   private static final int ITEMS_IN_GROUP = Integer.getInteger("org.jetbrains.tfsIntegration.requestGroupSize", 200);
 
+  // number of item groups of a read-only operation that are sent to the server simultaneously, 1 means one after another
+  private static final int PARALLEL_GROUPS = Integer.getInteger("org.jetbrains.tfsIntegration.parallelRequestGroups", 1);
+  // in parallel mode group size is adjusted so that a single request takes about this time
+  private static final long GROUP_TARGET_MILLIS = Long.getLong("org.jetbrains.tfsIntegration.requestGroupTargetTime", 2000);
+  private static final int MAX_ITEMS_IN_GROUP = Integer.getInteger("org.jetbrains.tfsIntegration.maxRequestGroupSize", ITEMS_IN_GROUP * 4);
+
+  private static final int HISTORY_PAGE_SIZE = 256;
+
+  // larger files are uploaded in several requests, each one is retried separately if the connection fails
+  private static final int UPLOAD_CHUNK_SIZE = Integer.getInteger("org.jetbrains.tfsIntegration.uploadChunkSize", 16 * 1024 * 1024);
+  private static final int UPLOAD_RETRIES = Integer.getInteger("org.jetbrains.tfsIntegration.uploadRetries", 3);
+  private static final long UPLOAD_RETRY_DELAY_MS = 1000;
+  // number of times a file is downloaded again if its content does not match the hash
+  private static final int DOWNLOAD_RETRIES = 2;
+
+  private static final int WORK_ITEMS_UPDATE_BATCH_SIZE = Integer.getInteger("org.jetbrains.tfsIntegration.workItemsUpdateBatchSize", 50);
+
+  // check in notes and policies are loaded every time the commit dialog opens but change rarely
+  private static final long CHECKIN_DEFINITIONS_TTL_MS = Long.getLong("org.jetbrains.tfsIntegration.checkinDefinitionsTtl", 5 * 60 * 1000);
+  // identity of a user is read on every work items query and check in but is not expected to change during a session
+  private static final long IDENTITY_TTL_MS = Long.getLong("org.jetbrains.tfsIntegration.identityCacheTtl", 60 * 60 * 1000);
+  // cached children of server items are dropped when the latest changeset changes, this is how often it is checked
+  private static final long CHILD_ITEMS_CHECK_INTERVAL_MS = Long.getLong("org.jetbrains.tfsIntegration.serverTreeCheckInterval", 10 * 1000);
+  // number of server items whose children are cached, least recently used ones are dropped
+  private static final int MAX_CACHED_CHILD_ITEMS = Integer.getInteger("org.jetbrains.tfsIntegration.serverTreeCacheSize", 1000);
+  // pending changes made by other clients are noticed by offline status of local workspaces after this time
+  private static final long WORKSPACE_PENDING_CHANGES_TTL_MS =
+    Long.getLong("org.jetbrains.tfsIntegration.offlineStatusPendingChangesTtl", 5 * 60 * 1000);
+
   private final URI myServerUri;
   private final String myInstanceId;
 
   @NotNull private final TfsBeansHolder myBeans;
+  private final AdaptiveGroupSize myGroupSize = new AdaptiveGroupSize(ITEMS_IN_GROUP, ITEMS_IN_GROUP / 8, MAX_ITEMS_IN_GROUP,
+                                                                      GROUP_TARGET_MILLIS);
   private static final Logger LOG = Logger.getInstance(VersionControlServer.class.getName());
 
+  private static class CachedValue<T> {
+    private final T myValue;
+    private final long myTimestamp = System.currentTimeMillis();
+
+    CachedValue(T value) {
+      myValue = value;
+    }
+
+    @Nullable
+    static <T> T getIfValid(@Nullable CachedValue<T> cached, long ttl) {
+      return cached != null && System.currentTimeMillis() - cached.myTimestamp < ttl ? cached.myValue : null;
+    }
+  }
+
+  // keyed by sorted team projects
+  private final Map<List<String>, CachedValue<List<CheckinNoteFieldDefinition>>> myCheckinNoteDefinitions = new ConcurrentHashMap<>();
+  // keyed by annotation name and annotated item
+  private final Map<Pair<String, String>, CachedValue<Collection<Annotation>>> myAnnotations = new ConcurrentHashMap<>();
+  // keyed by account name in lower case
+  private final Map<String, CachedValue<Identity>> myIdentities = new ConcurrentHashMap<>();
+  // keyed by parent server item and 'folders only' flag, guarded by itself as the fields below
+  private final Map<Pair<String, Boolean>, List<Item>> myChildItems = new LinkedHashMap<Pair<String, Boolean>, List<Item>>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Pair<String, Boolean>, List<Item>> eldest) {
+      return size() > MAX_CACHED_CHILD_ITEMS;
+    }
+  };
+  private int myChildItemsChangeset = -1;
+  private long myChildItemsCheckTime;
+  // incremented whenever cached children are dropped not to cache results of queries that started earlier
+  private int myChildItemsGeneration;
+  // pending changes of whole workspaces, keyed by workspace name and owner in lower case
+  private final Map<Pair<String, String>, CachedValue<Collection<PendingChange>>> myWorkspacePendingChanges = new ConcurrentHashMap<>();
+  // incremented whenever pending changes are modified not to cache results of queries that started earlier
+  private final AtomicInteger myPendingChangesModificationCount = new AtomicInteger();
+
   private interface OperationOnCollection<T, U> {
     U execute(Collection<T> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, HostNotApplicableException;
 
@@ -102,6 +191,16 @@ public class VersionControlServer {
                            Object projectOrComponent,
                            final Collection<T> items, String progressTitle)
     throws TfsException {
+    return execute(operation, projectOrComponent, items, progressTitle, false);
+  }
+
+  /**
+   * @param parallelizable true if the operation doesn't change workspace state, so item groups may be sent to the server in any order
+   */
+  private <T, U> U execute(final OperationOnCollection<T, U> operation,
+                           Object projectOrComponent,
+                           final Collection<T> items, String progressTitle, boolean parallelizable)
+    throws TfsException {
     return execute(new OperationOnList<T, U>() {
       @Override
       public U execute(List<T> items, Credentials credentials, ProgressIndicator pi) throws RemoteException, HostNotApplicableException {
@@ -112,7 +211,7 @@ public class VersionControlServer {
       public U merge(Collection<U> results) {
         return operation.merge(results);
       }
-    }, projectOrComponent, new ArrayList<>(items), progressTitle);
+    }, projectOrComponent, new ArrayList<>(items), progressTitle, parallelizable);
   }
 
   private <T, U> U execute(final OperationOnList<T, U> operation,
@@ -120,10 +219,29 @@ public class VersionControlServer {
                            final List<T> items,
                            final String progressTitle)
     throws TfsException {
+    return execute(operation, projectOrComponent, items, progressTitle, false);
+  }
+
+  /**
+   * @param parallelizable true if the operation doesn't change workspace state, so item groups may be sent to the server in any order
+   */
+  private <T, U> U execute(final OperationOnList<T, U> operation,
+                           final Object projectOrComponent,
+                           final List<T> items,
+                           final String progressTitle,
+                           boolean parallelizable)
+    throws TfsException {
     if (items.isEmpty()) {
       return operation.merge(Collections.emptyList());
     }
 
+    if (parallelizable &&
+        PARALLEL_GROUPS > 1 &&
+        items.size() > ITEMS_IN_GROUP &&
+        !ApplicationManager.getApplication().isDispatchThread()) {
+      return executeInParallel(operation, projectOrComponent, items, progressTitle);
+    }
+
     final Collection<U> results = new ArrayList<>();
     TfsUtil.consumeInParts(items, ITEMS_IN_GROUP, ts -> {
       U result = TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<U>(progressTitle) {
@@ -137,6 +255,69 @@ public class VersionControlServer {
     return operation.merge(results);
   }
 
+  /**
+   * Sends item groups to the server simultaneously. Group size is adjusted according to observed response time,
+   * results are passed to {@link OperationOnList#merge(Collection)} in the order of items.
+   */
+  private <T, U> U executeInParallel(final OperationOnList<T, U> operation,
+                                     final Object projectOrComponent,
+                                     final List<T> items,
+                                     final String progressTitle) throws TfsException {
+    final ProgressIndicator pi = ProgressManager.getInstance().getProgressIndicator();
+    final SortedMap<Integer, U> results = Collections.synchronizedSortedMap(new TreeMap<>());
+    final AtomicInteger nextIndex = new AtomicInteger();
+    final AtomicReference<TfsException> error = new AtomicReference<>();
+
+    final Runnable worker = () -> {
+      while (error.get() == null && (pi == null || !pi.isCanceled())) {
+        int groupSize = myGroupSize.get();
+        final int from = nextIndex.getAndAdd(groupSize);
+        if (from >= items.size()) {
+          break;
+        }
+        final List<T> group = items.subList(from, Math.min(from + groupSize, items.size()));
+        long start = System.currentTimeMillis();
+        try {
+          U result = TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<U>(progressTitle) {
+            @Override
+            public U execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+              return operation.execute(group, credentials, pi);
+            }
+          });
+          results.put(from, result);
+        }
+        catch (TfsException e) {
+          error.compareAndSet(null, e);
+          break;
+        }
+        myGroupSize.update(group.size(), System.currentTimeMillis() - start);
+      }
+    };
+
+    int workersCount = Math.min(PARALLEL_GROUPS, (items.size() + ITEMS_IN_GROUP - 1) / ITEMS_IN_GROUP);
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS request groups", workersCount);
+    List<Future<?>> futures = new ArrayList<>(workersCount);
+    for (int i = 0; i < workersCount; i++) {
+      futures.add(executor.submit(() -> ProgressManager.getInstance().executeProcessUnderProgress(worker, pi)));
+    }
+
+    try {
+      for (Future<?> future : futures) {
+        TfsExecutionUtil.waitFor(future);
+      }
+    }
+    finally {
+      // workers check the progress and won't start new requests once cancelled
+      executor.shutdown();
+    }
+
+    if (error.get() != null) {
+      throw error.get();
+    }
+    ProgressManager.checkCanceled();
+    return operation.merge(new ArrayList<>(results.values()));
+  }
+
   public VersionControlServer(URI uri, @NotNull TfsBeansHolder beans, String instanceId) {
     myServerUri = uri;
     myBeans = beans;
@@ -403,7 +584,12 @@ public class VersionControlServer {
         }
       };
 
-    return execute(operation, projectOrComponent, paths, progressTitle);
+    try {
+      return execute(operation, projectOrComponent, paths, progressTitle);
+    }
+    finally {
+      invalidateWorkspacePendingChanges(workspaceName, workspaceOwner);
+    }
   }
 
 
@@ -469,9 +655,30 @@ public class VersionControlServer {
 
   public List<Item> getChildItems(final String parentServerItem, final boolean foldersOnly, Object projectOrComponent, String progressTitle)
     throws TfsException {
+    return getChildItems(Collections.singletonList(parentServerItem), foldersOnly, projectOrComponent, progressTitle).get(parentServerItem);
+  }
+
+  /**
+   * Queries children of several items in a single request. Results are stored to be returned by {@link #getCachedChildItems}.
+   *
+   * @return children of every parent item
+   */
+  public Map<String, List<Item>> getChildItems(final Collection<String> parentServerItems,
+                                               final boolean foldersOnly,
+                                               Object projectOrComponent,
+                                               String progressTitle) throws TfsException {
+    final List<String> parents = new ArrayList<>(parentServerItems);
     final ArrayOfItemSpec itemSpecs = new ArrayOfItemSpec();
-    itemSpecs.setItemSpec(new ItemSpec[]{createItemSpec(parentServerItem, RecursionType.OneLevel)});
+    List<ItemSpec> specs = new ArrayList<>(parents.size());
+    for (String parent : parents) {
+      specs.add(createItemSpec(parent, RecursionType.OneLevel));
+    }
+    itemSpecs.setItemSpec(specs.toArray(new ItemSpec[0]));
 
+    final int generation;
+    synchronized (myChildItems) {
+      generation = myChildItemsGeneration;
+    }
     final ArrayOfItemSet arrayOfItemSet =
       TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<ArrayOfItemSet>(progressTitle) {
         @Override
@@ -488,22 +695,85 @@ public class VersionControlServer {
         }
       });
 
-    TFSVcs.assertTrue(arrayOfItemSet.getItemSet() != null && arrayOfItemSet.getItemSet().length == 1);
-    final ItemSet itemSet = arrayOfItemSet.getItemSet()[0];
-    if (itemSet.getItems() != null && itemSet.getItems().getItem() != null) {
-      List<Item> result = new ArrayList<>(itemSet.getItems().getItem().length);
-      for (Item item : itemSet.getItems().getItem()) {
-        if (!item.getItem().equals(parentServerItem)) {
-          result.add(item);
+    TFSVcs.assertTrue(arrayOfItemSet.getItemSet() != null && arrayOfItemSet.getItemSet().length == parents.size());
+    Map<String, List<Item>> result = new HashMap<>(parents.size());
+    for (int i = 0; i < parents.size(); i++) {
+      final String parent = parents.get(i);
+      final ItemSet itemSet = arrayOfItemSet.getItemSet()[i];
+      List<Item> children;
+      if (itemSet.getItems() != null && itemSet.getItems().getItem() != null) {
+        children = new ArrayList<>(itemSet.getItems().getItem().length);
+        for (Item item : itemSet.getItems().getItem()) {
+          if (!item.getItem().equals(parent)) {
+            children.add(item);
+          }
         }
+        children = Collections.unmodifiableList(children);
       }
-      return result;
+      else {
+        children = Collections.emptyList();
+      }
+      result.put(parent, children);
     }
-    else {
-      return Collections.emptyList();
+    synchronized (myChildItems) {
+      if (myChildItemsGeneration == generation) {
+        for (Map.Entry<String, List<Item>> entry : result.entrySet()) {
+          myChildItems.put(Pair.create(entry.getKey(), foldersOnly), entry.getValue());
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return children as they were returned by the last {@link #getChildItems} call or null if not queried yet
+   */
+  @Nullable
+  public List<Item> getCachedChildItems(String parentServerItem, boolean foldersOnly) {
+    synchronized (myChildItems) {
+      return myChildItems.get(Pair.create(parentServerItem, foldersOnly));
     }
   }
 
+  /**
+   * Drops cached children of items if a changeset was committed since they were queried. The server is asked for the latest
+   * changeset in background at most once in {@link #CHILD_ITEMS_CHECK_INTERVAL_MS}, cached children are kept until it answers.
+   */
+  public void validateCachedChildItems(final Object projectOrComponent) {
+    synchronized (myChildItems) {
+      if (System.currentTimeMillis() - myChildItemsCheckTime < CHILD_ITEMS_CHECK_INTERVAL_MS) {
+        return;
+      }
+      // don't start another check while this one is in progress
+      myChildItemsCheckTime = System.currentTimeMillis();
+    }
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        int latestChangeset = getLatestChangesetId(projectOrComponent, null);
+        synchronized (myChildItems) {
+          if (latestChangeset != myChildItemsChangeset) {
+            myChildItems.clear();
+            myChildItemsGeneration++;
+            myChildItemsChangeset = latestChangeset;
+          }
+        }
+      }
+      catch (TfsException e) {
+        LOG.debug(e);
+      }
+    });
+  }
+
+  public int getLatestChangesetId(Object projectOrComponent, String progressTitle) throws TfsException {
+    return TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Integer>(progressTitle) {
+      @Override
+      public Integer execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+        return myBeans.getRepositoryStub(credentials, pi).getRepositoryProperties(new GetRepositoryProperties())
+          .getGetRepositoryPropertiesResult().getLcset();
+      }
+    });
+  }
+
   public static class ExtendedItemsAndPendingChanges {
     public final List<ExtendedItem> extendedItems;
     public final Collection<PendingChange> pendingChanges;
@@ -582,7 +852,7 @@ public class VersionControlServer {
         }
       };
 
-    return execute(operation, projectOrComponent, itemsSpecs, progressTitle);
+    return execute(operation, projectOrComponent, itemsSpecs, progressTitle, true);
   }
 
   @Nullable
@@ -698,16 +968,51 @@ public class VersionControlServer {
       }
     };
 
-    return execute(operation, projectOrComponent, paths, progressTitle);
+    return execute(operation, projectOrComponent, paths, progressTitle, true);
   }
 
   public void downloadItem(Project project, final String downloadKey, final OutputStream outputStream, String progressTitle)
+    throws TfsException {
+    download(project, downloadKey, progressTitle, (downloadUrl, credentials, httpClient) -> {
+      WebServiceHelper.httpGet(myServerUri, downloadUrl, outputStream, credentials, httpClient);
+      return null;
+    });
+  }
+
+  /**
+   * Downloads the item straight into the file. If the hash is given, the content is checked against it while being written
+   * and downloaded again on mismatch.
+   */
+  public void downloadItem(Project project,
+                           final String downloadKey,
+                           final File target,
+                           @Nullable final byte[] md5,
+                           String progressTitle) throws TfsException {
+    for (int attempt = 0; ; attempt++) {
+      byte[] actual = download(project, downloadKey, progressTitle, (downloadUrl, credentials, httpClient) -> WebServiceHelper
+        .httpGet(myServerUri, downloadUrl, target, md5 != null, credentials, httpClient));
+      if (md5 == null || Arrays.equals(md5, actual)) {
+        return;
+      }
+      LOG.warn("Downloaded content hash mismatch: " + target.getPath() + ", attempt " + (attempt + 1));
+      if (attempt >= DOWNLOAD_RETRIES) {
+        throw new OperationFailedException(
+          MessageFormat.format("Downloaded content of ''{0}'' does not match the server hash", target.getPath()));
+      }
+    }
+  }
+
+  private interface DownloadAction<T> {
+    T download(String downloadUrl, Credentials credentials, HttpClient httpClient) throws Exception;
+  }
+
+  private <T> T download(final Project project, final String downloadKey, final String progressTitle, final DownloadAction<T> action)
     throws TfsException {
     final boolean tryProxy = TFSConfigurationManager.getInstance().shouldTryProxy(myServerUri);
     try {
-      TfsRequestManager.executeRequest(myServerUri, project, new TfsRequestManager.Request<Void>(progressTitle) {
+      return TfsRequestManager.executeRequest(myServerUri, project, new TfsRequestManager.Request<T>(progressTitle) {
         @Override
-        public Void execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+        public T execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
           String downloadUrl;
           if (tryProxy) {
             downloadUrl = TfsUtil.appendPath(TFSConfigurationManager.getInstance().getProxyUri(myServerUri),
@@ -721,8 +1026,12 @@ public class VersionControlServer {
             downloadUrl = TfsUtil.appendPath(serverUri, myBeans.getDownloadUrl(credentials, pi) + "?" + downloadKey);
           }
           LOG.debug((tryProxy ? "Downloading via proxy: " : "Downloading: ") + downloadUrl);
-          WebServiceHelper.httpGet(myServerUri, downloadUrl, outputStream, credentials, myBeans.getUploadDownloadClient(tryProxy));
-          return null;
+          return action.download(downloadUrl, credentials, myBeans.getUploadDownloadClient(tryProxy));
+        }
+
+        @Override
+        public boolean isContentTransfer() {
+          return true;
         }
       });
     }
@@ -736,7 +1045,7 @@ public class VersionControlServer {
                    ApplicationNamesInfo.getInstance().getFullProductName());
         TfsUtil.showBalloon(project, MessageType.WARNING, messageHtml);
         TFSConfigurationManager.getInstance().setProxyInaccessible(myServerUri);
-        downloadItem(project, downloadKey, outputStream, progressTitle);
+        return download(project, downloadKey, progressTitle, action);
       }
       else {
         throw e;
@@ -766,15 +1075,50 @@ public class VersionControlServer {
                                       final VersionSpec versionTo,
                                       int maxCount,
                                       Object projectOrComponent, String progressTitle) throws TfsException {
+    final List<Changeset> allChangeSets = new ArrayList<>();
+    queryHistory(workspaceName, workspaceOwner, itemSpec, user, itemVersion, versionFrom, versionTo, maxCount, true, projectOrComponent,
+                 progressTitle, changesets -> {
+        ContainerUtil.addAll(allChangeSets, changesets);
+        return true;
+      });
+    return allChangeSets;
+  }
+
+  public interface HistoryConsumer {
+    /**
+     * @param changesets next page of changesets, newest first
+     * @return false to stop loading
+     */
+    boolean consume(Changeset[] changesets) throws TfsException;
+  }
+
+  /**
+   * Loads history page by page and passes every page to the consumer as soon as it is received
+   *
+   * @param includeFiles whether changesets should be loaded along with their changes
+   * @return version to be passed as <code>versionTo</code> to continue loading from where the consumer stopped or <code>maxCount</code>
+   *         was reached, <code>null</code> if there are no more changesets
+   */
+  @Nullable
+  public VersionSpec queryHistory(final String workspaceName,
+                                  final String workspaceOwner,
+                                  final ItemSpec itemSpec,
+                                  final String user,
+                                  final VersionSpec itemVersion,
+                                  final VersionSpec versionFrom,
+                                  final VersionSpec versionTo,
+                                  int maxCount,
+                                  final boolean includeFiles,
+                                  Object projectOrComponent,
+                                  String progressTitle,
+                                  HistoryConsumer consumer) throws TfsException {
     // TODO: slot mode
-    // TODO: include allChangeSets
 
-    List<Changeset> allChangeSets = new ArrayList<>();
     int total = maxCount > 0 ? maxCount : Integer.MAX_VALUE;
     final Ref<VersionSpec> versionToCurrent = new Ref<>(versionTo);
 
     while (total > 0) {
-      final int batchMax = Math.min(256, total);
+      final int batchMax = Math.min(HISTORY_PAGE_SIZE, total);
 
       Changeset[] currentChangeSets =
         TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Changeset[]>(progressTitle) {
@@ -789,27 +1133,31 @@ public class VersionControlServer {
             param.setVersionFrom(versionFrom);
             param.setVersionTo(versionToCurrent.get());
             param.setMaxCount(batchMax);
-            param.setIncludeFiles(true);
+            param.setIncludeFiles(includeFiles);
             param.setGenerateDownloadUrls(false);
             param.setSlotMode(false);
             return myBeans.getRepositoryStub(credentials, pi).queryHistory(param).getQueryHistoryResult().getChangeset();
           }
         });
 
-      if (currentChangeSets != null) {
-        ContainerUtil.addAll(allChangeSets, currentChangeSets);
+      if (currentChangeSets == null || currentChangeSets.length == 0) {
+        return null;
       }
 
+      // version range is inclusive, continue right below the oldest changeset received
+      int lastChangeset = currentChangeSets[currentChangeSets.length - 1].getCset();
+      VersionSpec next = lastChangeset > 1 ? new ChangesetVersionSpec(lastChangeset - 1) : null;
+      versionToCurrent.set(next);
 
-      if (currentChangeSets == null || currentChangeSets.length < batchMax) {
-        break;
+      if (!consumer.consume(currentChangeSets)) {
+        return next;
+      }
+      if (currentChangeSets.length < batchMax || next == null) {
+        return null;
       }
-
       total -= currentChangeSets.length;
-      Changeset lastChangeSet = currentChangeSets[currentChangeSets.length - 1];
-      versionToCurrent.set(new ChangesetVersionSpec(lastChangeSet.getCset()));
     }
-    return allChangeSets;
+    return versionToCurrent.get();
   }
 
   public Workspace[] queryWorkspaces(final String computer, Object projectOrComponent, boolean force) throws TfsException {
@@ -914,7 +1262,12 @@ public class VersionControlServer {
         }
       };
 
-    return execute(operation, projectOrComponent, serverPaths, progressTitle);
+    try {
+      return execute(operation, projectOrComponent, serverPaths, progressTitle);
+    }
+    finally {
+      invalidateWorkspacePendingChanges(workspaceName, workspaceOwner);
+    }
   }
 
   public List<GetOperation> get(final String workspaceName,
@@ -1026,7 +1379,7 @@ public class VersionControlServer {
       }
     };
 
-    return execute(operation, projectOrComponent, paths, progressTitle);
+    return execute(operation, projectOrComponent, paths, progressTitle, true);
   }
 
 
@@ -1061,25 +1414,41 @@ public class VersionControlServer {
   public ResolveResponse resolveConflict(final String workspaceName, final String workspasceOwnerName, final ResolveConflictParams params,
                                          Object projectOrComponent, String progressTitle)
     throws TfsException {
-    return TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<ResolveResponse>(progressTitle) {
-      @Override
-      public ResolveResponse execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
-        Resolve param = new Resolve();
-        param.setWorkspaceName(workspaceName);
-        param.setOwnerName(workspasceOwnerName);
-        param.setConflictId(params.conflictId);
-        param.setResolution(params.resolution);
-        param.setNewPath(params.newPath);
-        param.setEncoding(params.encoding);
-        param.setLockLevel(params.lockLevel);
-        return myBeans.getRepositoryStub(credentials, pi).resolve(param);
-      }
-    });
+    try {
+      return TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<ResolveResponse>(progressTitle) {
+        @Override
+        public ResolveResponse execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+          Resolve param = new Resolve();
+          param.setWorkspaceName(workspaceName);
+          param.setOwnerName(workspasceOwnerName);
+          param.setConflictId(params.conflictId);
+          param.setResolution(params.resolution);
+          param.setNewPath(params.newPath);
+          param.setEncoding(params.encoding);
+          param.setLockLevel(params.lockLevel);
+          return myBeans.getRepositoryStub(credentials, pi).resolve(param);
+        }
+      });
+    }
+    finally {
+      invalidateWorkspacePendingChanges(workspaceName, workspasceOwnerName);
+    }
   }
 
 
   public void uploadItem(final WorkspaceInfo workspaceInfo, final PendingChange change, Object projectOrComponent, String progressTitle)
     throws TfsException, IOException {
+    uploadItem(workspaceInfo, change, null, projectOrComponent, progressTitle);
+  }
+
+  /**
+   * @param md5 hash of the local file content if already calculated
+   */
+  public void uploadItem(final WorkspaceInfo workspaceInfo,
+                         final PendingChange change,
+                         @Nullable final byte[] md5,
+                         Object projectOrComponent,
+                         String progressTitle) throws TfsException, IOException {
     TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Void>(progressTitle) {
       @Override
       public Void execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
@@ -1087,26 +1456,104 @@ public class VersionControlServer {
         File file = VersionControlPath.getFile(change.getLocal());
         long fileLength = file.length();
 
-        ArrayList<Part> parts = new ArrayList<>();
-        parts.add(new StringPart(SERVER_ITEM_FIELD, change.getItem(), "UTF-8"));
-        parts.add(new StringPart(WORKSPACE_NAME_FIELD, workspaceInfo.getName()));
-        parts.add(new StringPart(WORKSPACE_OWNER_FIELD, workspaceInfo.getOwnerName()));
-        parts.add(new StringPart(LENGTH_FIELD, Long.toString(fileLength)));
-        final byte[] hash = TfsFileUtil.calculateMD5(file);
-        parts.add(new StringPart(HASH_FIELD, Base64.getEncoder().encodeToString(hash)));
-        // TODO: handle files too large to fit in a single POST
-        parts.add(new StringPart(RANGE_FIELD, String.format("bytes=0-%d/%d", fileLength - 1, fileLength)));
-        FilePart filePart = new FilePart(CONTENT_FIELD, SERVER_ITEM_FIELD, file);
-        parts.add(filePart);
-        filePart.setCharSet(null);
-        WebServiceHelper
-          .httpPost(uploadUrl, parts.toArray(new Part[0]), null, credentials, serverUri, myBeans.getUploadDownloadClient(false));
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+          byte[] chunk = readChunk(input, 0, fileLength);
+          byte[] hash = md5;
+          if (hash == null) {
+            MessageDigest digest = DigestUtil.md5();
+            digest.update(chunk);
+            if (chunk.length < fileLength) {
+              // the whole file hash is sent along with the first chunk
+              updateDigest(digest, input, chunk.length);
+            }
+            hash = digest.digest();
+          }
+          String hashString = Base64.getEncoder().encodeToString(hash);
+
+          long offset = 0;
+          while (true) {
+            Part[] parts = createUploadParts(workspaceInfo, change, fileLength, hashString, offset, chunk);
+            uploadChunk(uploadUrl, parts, credentials, serverUri, pi, change);
+            offset += chunk.length;
+            if (offset >= fileLength) {
+              break;
+            }
+            chunk = readChunk(input, offset, fileLength);
+          }
+        }
         return null;
       }
+
+      @Override
+      public boolean isContentTransfer() {
+        return true;
+      }
     });
 
   }
 
+  private static byte[] readChunk(RandomAccessFile input, long offset, long fileLength) throws IOException {
+    byte[] chunk = new byte[(int)Math.min(UPLOAD_CHUNK_SIZE, fileLength - offset)];
+    input.seek(offset);
+    input.readFully(chunk);
+    return chunk;
+  }
+
+  private static void updateDigest(MessageDigest digest, RandomAccessFile input, long offset) throws IOException {
+    byte[] buffer = new byte[8192];
+    input.seek(offset);
+    int read;
+    while ((read = input.read(buffer)) > 0) {
+      digest.update(buffer, 0, read);
+    }
+  }
+
+  private static Part[] createUploadParts(WorkspaceInfo workspaceInfo,
+                                          PendingChange change,
+                                          long fileLength,
+                                          String hash,
+                                          long offset,
+                                          byte[] chunk) {
+    ArrayList<Part> parts = new ArrayList<>();
+    parts.add(new StringPart(SERVER_ITEM_FIELD, change.getItem(), "UTF-8"));
+    parts.add(new StringPart(WORKSPACE_NAME_FIELD, workspaceInfo.getName()));
+    parts.add(new StringPart(WORKSPACE_OWNER_FIELD, workspaceInfo.getOwnerName()));
+    parts.add(new StringPart(LENGTH_FIELD, Long.toString(fileLength)));
+    parts.add(new StringPart(HASH_FIELD, hash));
+    parts.add(new StringPart(RANGE_FIELD, String.format("bytes=%d-%d/%d", offset, offset + chunk.length - 1, fileLength)));
+    FilePart filePart = new FilePart(CONTENT_FIELD, new ByteArrayPartSource(SERVER_ITEM_FIELD, chunk));
+    parts.add(filePart);
+    filePart.setCharSet(null);
+    return parts.toArray(new Part[0]);
+  }
+
+  /**
+   * Sends a single range of the file, the range is sent again if the connection fails
+   */
+  private void uploadChunk(String uploadUrl,
+                           Part[] parts,
+                           Credentials credentials,
+                           URI serverUri,
+                           @Nullable ProgressIndicator pi,
+                           PendingChange change) throws IOException, TfsException {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        WebServiceHelper.httpPost(uploadUrl, parts, null, credentials, serverUri, myBeans.getUploadDownloadClient(false));
+        return;
+      }
+      catch (IOException e) {
+        if (attempt >= UPLOAD_RETRIES) {
+          throw e;
+        }
+        LOG.info("Upload of " + change.getItem() + " failed, retrying", e);
+        if (pi != null) {
+          pi.checkCanceled();
+        }
+        TimeoutUtil.sleep(UPLOAD_RETRY_DELAY_MS * (attempt + 1));
+      }
+    }
+  }
+
   public Collection<PendingChange> queryPendingSetsByLocalPaths(final String workspaceName,
                                                                 final String workspaceOwnerName,
                                                                 final Collection<ItemPath> paths,
@@ -1164,7 +1611,51 @@ public class VersionControlServer {
         }
       };
 
-    return execute(operation, projectOrComponent, itemSpecs, progressTitle);
+    return execute(operation, projectOrComponent, itemSpecs, progressTitle, true);
+  }
+
+  /**
+   * @return pending changes of the whole workspace. They are queried not more often than once in
+   *         {@link #WORKSPACE_PENDING_CHANGES_TTL_MS} unless modified by this client; the last known ones are returned if the
+   *         server can't be reached.
+   */
+  public Collection<PendingChange> getWorkspacePendingChanges(final String workspaceName,
+                                                              final String workspaceOwnerName,
+                                                              Object projectOrComponent,
+                                                              String progressTitle) throws TfsException {
+    Pair<String, String> key = getWorkspaceKey(workspaceName, workspaceOwnerName);
+    CachedValue<Collection<PendingChange>> cached = myWorkspacePendingChanges.get(key);
+    Collection<PendingChange> result = CachedValue.getIfValid(cached, WORKSPACE_PENDING_CHANGES_TTL_MS);
+    if (result != null) {
+      return result;
+    }
+
+    int modificationCount = myPendingChangesModificationCount.get();
+    try {
+      result = Collections.unmodifiableCollection(
+        queryPendingSetsByServerItems(workspaceName, workspaceOwnerName, Collections.singletonList(VersionControlPath.ROOT_FOLDER),
+                                      RecursionType.Full, projectOrComponent, progressTitle));
+    }
+    catch (ConnectionFailedException | ConnectionTimeoutException | HostNotFoundException e) {
+      if (cached == null) {
+        throw e;
+      }
+      LOG.info("Using last known pending changes of workspace " + workspaceName + ": " + e.getMessage());
+      return cached.myValue;
+    }
+    if (myPendingChangesModificationCount.get() == modificationCount) {
+      myWorkspacePendingChanges.put(key, new CachedValue<>(result));
+    }
+    return result;
+  }
+
+  private void invalidateWorkspacePendingChanges(String workspaceName, String workspaceOwnerName) {
+    myPendingChangesModificationCount.incrementAndGet();
+    myWorkspacePendingChanges.remove(getWorkspaceKey(workspaceName, workspaceOwnerName));
+  }
+
+  private static Pair<String, String> getWorkspaceKey(String workspaceName, String workspaceOwnerName) {
+    return Pair.create(StringUtil.toLowerCase(workspaceName), StringUtil.toLowerCase(workspaceOwnerName));
   }
 
   public ResultWithFailures<CheckinResult> checkIn(final String workspaceName,
@@ -1245,7 +1736,12 @@ public class VersionControlServer {
         }
       };
 
-    return execute(operation, projectOrComponent, serverItems, progressTitle);
+    try {
+      return execute(operation, projectOrComponent, serverItems, progressTitle);
+    }
+    finally {
+      invalidateWorkspacePendingChanges(workspaceName, workspaceOwnerName);
+    }
   }
 
   @Nullable
@@ -1281,23 +1777,28 @@ public class VersionControlServer {
     final ItemSpec source = createItemSpec(sourceServerPath, RecursionType.Full);
     final ItemSpec target = createItemSpec(targetServerPath, null);
 
-    return TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<MergeResponse>(progressTitle) {
-      @Override
-      public MergeResponse execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
-        Merge param = new Merge();
-        param.setWorkspaceName(workspaceName);
-        param.setWorkspaceOwner(ownerName);
-        param.setSource(source);
-        param.setTarget(target);
-        param.setFrom(fromVersion);
-        param.setTo(toVersion);
-        MergeOptions mergeOptions = new MergeOptions();
-        mergeOptions.setMergeOptions_type0(new MergeOptions_type0[]{MergeOptions_type0.None});
-        param.setOptions(mergeOptions);
-        param.setLockLevel(LockLevel.Unchanged);
-        return myBeans.getRepositoryStub(credentials, pi).merge(param);
-      }
-    });
+    try {
+      return TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<MergeResponse>(progressTitle) {
+        @Override
+        public MergeResponse execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+          Merge param = new Merge();
+          param.setWorkspaceName(workspaceName);
+          param.setWorkspaceOwner(ownerName);
+          param.setSource(source);
+          param.setTarget(target);
+          param.setFrom(fromVersion);
+          param.setTo(toVersion);
+          MergeOptions mergeOptions = new MergeOptions();
+          mergeOptions.setMergeOptions_type0(new MergeOptions_type0[]{MergeOptions_type0.None});
+          param.setOptions(mergeOptions);
+          param.setLockLevel(LockLevel.Unchanged);
+          return myBeans.getRepositoryStub(credentials, pi).merge(param);
+        }
+      });
+    }
+    finally {
+      invalidateWorkspacePendingChanges(workspaceName, ownerName);
+    }
   }
 
   /**
@@ -1319,10 +1820,24 @@ public class VersionControlServer {
         });
 
     final CheckinNoteFieldDefinition[] definitions = result.getCheckinNoteFieldDefinition();
-    if (definitions == null) {
-      return Collections.emptyList();
-    }
-    return Arrays.asList(definitions);
+    List<CheckinNoteFieldDefinition> list =
+      definitions != null ? Collections.unmodifiableList(Arrays.asList(definitions)) : Collections.emptyList();
+    myCheckinNoteDefinitions.put(getCheckinNoteDefinitionKey(teamProjects), new CachedValue<>(list));
+    return list;
+  }
+
+  /**
+   * @return result of a recent {@link #queryCheckinNoteDefinition} call for the same team projects or null if there was none
+   */
+  @Nullable
+  public List<CheckinNoteFieldDefinition> getCachedCheckinNoteDefinition(final Collection<String> teamProjects) {
+    return CachedValue.getIfValid(myCheckinNoteDefinitions.get(getCheckinNoteDefinitionKey(teamProjects)), CHECKIN_DEFINITIONS_TTL_MS);
+  }
+
+  private static List<String> getCheckinNoteDefinitionKey(Collection<String> teamProjects) {
+    List<String> result = new ArrayList<>(teamProjects);
+    Collections.sort(result);
+    return result;
   }
 
   public Collection<Annotation> queryAnnotations(final String annotationName,
@@ -1341,17 +1856,29 @@ public class VersionControlServer {
           return myBeans.getRepositoryStub(credentials, pi).queryAnnotation(param).getQueryAnnotationResult();
         }
       });
-    if (arrayOfAnnotation == null || arrayOfAnnotation.getAnnotation() == null) {
-      return Collections.emptyList();
-    }
-
     Collection<Annotation> result = new ArrayList<>();
-    for (Annotation annotation : arrayOfAnnotation.getAnnotation()) {
-      if (annotationName.equals(annotation.getName())) {
-        result.add(annotation);
+    if (arrayOfAnnotation != null && arrayOfAnnotation.getAnnotation() != null) {
+      for (Annotation annotation : arrayOfAnnotation.getAnnotation()) {
+        if (annotationName.equals(annotation.getName())) {
+          result.add(annotation);
+        }
       }
     }
-    return result;
+    Collection<Annotation> annotations = Collections.unmodifiableCollection(result);
+    myAnnotations.put(Pair.create(annotationName, serverItem), new CachedValue<>(annotations));
+    return annotations;
+  }
+
+  /**
+   * @return result of a recent {@link #queryAnnotations} call for the same annotation and item or null if there was none
+   */
+  @Nullable
+  public Collection<Annotation> getCachedAnnotations(final String annotationName, final String serverItem) {
+    return CachedValue.getIfValid(myAnnotations.get(Pair.create(annotationName, serverItem)), CHECKIN_DEFINITIONS_TTL_MS);
+  }
+
+  private void invalidateAnnotations(final String annotationName) {
+    myAnnotations.keySet().removeIf(key -> annotationName.equals(key.first));
   }
 
   public void createAnnotation(final String serverItem,
@@ -1372,6 +1899,7 @@ public class VersionControlServer {
         return null;
       }
     });
+    invalidateAnnotations(annotationName);
   }
 
   public void deleteAnnotation(final String serverItem, final String annotationName, Object projectOrComponent, String progressTitle)
@@ -1387,6 +1915,7 @@ public class VersionControlServer {
         return null;
       }
     });
+    invalidateAnnotations(annotationName);
   }
 
   @Nullable
@@ -1426,6 +1955,49 @@ public class VersionControlServer {
     return null;
   }
 
+  /**
+   * @return MD5 of files at the versions the workspace has, by item id
+   */
+  public Map<Integer, byte[]> queryWorkspaceItemHashes(final String workspaceName,
+                                                       final String workspaceOwnerName,
+                                                       Collection<ItemSpec> itemSpecs,
+                                                       Object projectOrComponent,
+                                                       String progressTitle) throws TfsException {
+    final ArrayOfItemSpec arrayOfItemSpec = new ArrayOfItemSpec();
+    arrayOfItemSpec.setItemSpec(itemSpecs.toArray(new ItemSpec[0]));
+
+    ItemSet[] itemSets =
+      TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<ItemSet[]>(progressTitle) {
+        @Override
+        public ItemSet[] execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+          QueryItems param = new QueryItems();
+          param.setWorkspaceName(workspaceName);
+          param.setWorkspaceOwner(workspaceOwnerName);
+          param.setItems(arrayOfItemSpec);
+          param.setVersion(new WorkspaceVersionSpec(workspaceName, workspaceOwnerName));
+          param.setItemType(ItemType.File);
+          param.setDeletedState(DeletedState.NonDeleted);
+          param.setGenerateDownloadUrls(false);
+          return myBeans.getRepositoryStub(credentials, pi).queryItems(param).getQueryItemsResult().getItemSet();
+        }
+      });
+
+    Map<Integer, byte[]> result = new HashMap<>();
+    if (itemSets != null) {
+      for (ItemSet itemSet : itemSets) {
+        if (itemSet.getItems() != null && itemSet.getItems().getItem() != null) {
+          for (Item item : itemSet.getItems().getItem()) {
+            byte[] hash = TfsFileUtil.getHashValue(item.getHash());
+            if (hash != null) {
+              result.put(item.getItemid(), hash);
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
   public List<Item> queryItems(final ItemSpec itemSpec, final VersionSpec version, Object projectOrComponent, String progressTitle)
     throws TfsException {
     final ArrayOfItemSpec itemSpecs = new ArrayOfItemSpec();
@@ -1612,20 +2184,38 @@ public class VersionControlServer {
    * @throws TfsException
    */
   public Identity readIdentity(String qualifiedUsername, Object projectOrComponent, String progressTitle) throws TfsException {
+    final String key = StringUtil.toLowerCase(qualifiedUsername);
+    Identity cached = CachedValue.getIfValid(myIdentities.get(key), IDENTITY_TTL_MS);
+    if (cached != null) {
+      return cached;
+    }
+
     final SearchFactor searchFactor = SearchFactor.AccountName;
     final String factorValue = qualifiedUsername;
     final QueryMembership queryMembership = QueryMembership.None;
 
-    return TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Identity>(progressTitle) {
-      @Override
-      public Identity execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
-        ReadIdentity param = new ReadIdentity();
-        param.setFactor(searchFactor);
-        param.setFactorValue(factorValue);
-        param.setQueryMembership(queryMembership);
-        return myBeans.getGroupSecurityServiceStub(credentials, pi).readIdentity(param).getReadIdentityResult();
-      }
-    });
+    Identity identity =
+      TfsRequestManager.executeRequest(myServerUri, projectOrComponent, new TfsRequestManager.Request<Identity>(progressTitle) {
+        @Override
+        public Identity execute(Credentials credentials, URI serverUri, @Nullable ProgressIndicator pi) throws Exception {
+          ReadIdentity param = new ReadIdentity();
+          param.setFactor(searchFactor);
+          param.setFactorValue(factorValue);
+          param.setQueryMembership(queryMembership);
+          return myBeans.getGroupSecurityServiceStub(credentials, pi).readIdentity(param).getReadIdentityResult();
+        }
+      });
+    if (identity != null) {
+      myIdentities.put(key, new CachedValue<>(identity));
+    }
+    return identity;
+  }
+
+  /**
+   * Makes {@link #readIdentity} query the server again
+   */
+  public void invalidateIdentities() {
+    myIdentities.clear();
   }
 
   // WorkItemTracking
@@ -1640,6 +2230,18 @@ public class VersionControlServer {
   }
 
   public List<WorkItem> queryWorkItems(Query_type0E query, Object projectOrComponent, String progressTitle) throws TfsException {
+    WorkItemsPager pager = new WorkItemsPager(this, queryWorkItemIds(query, projectOrComponent, progressTitle));
+    List<WorkItem> result = new ArrayList<>(pager.getTotalCount());
+    while (pager.hasMore()) {
+      result.addAll(pager.loadNextPage(projectOrComponent, progressTitle));
+    }
+    return result;
+  }
+
+  /**
+   * @return ids of work items found, work items themselves can be loaded with {@link #pageWorkItemsByIds}
+   */
+  public WorkItemIds queryWorkItemIds(Query_type0E query, Object projectOrComponent, String progressTitle) throws TfsException {
     final PsQuery_type1 psQuery_type1 = new PsQuery_type1();
     psQuery_type1.setQuery(query);
 
@@ -1654,48 +2256,30 @@ public class VersionControlServer {
           }
         });
 
-    final List<Integer> ids = parseWorkItemsIds(queryWorkitemsResponse);
-    Collections.sort(ids);
-    return pageWorkitemsByIds(ids, projectOrComponent, progressTitle);
+    return parseWorkItemsIds(queryWorkitemsResponse);
   }
 
-  private static List<Integer> parseWorkItemsIds(final QueryWorkitemsResponse queryWorkitemsResponse) {
+  private static WorkItemIds parseWorkItemsIds(final QueryWorkitemsResponse queryWorkitemsResponse) {
     Id_type0[] ids_type0 = queryWorkitemsResponse.getResultIds().getQueryIds().getId();
+    if (ids_type0 == null) {
+      return WorkItemIds.EMPTY;
+    }
 
-    List<Integer> workItemsIdSet = new ArrayList<>();
-    if (ids_type0 != null) {
-      for (Id_type0 id_type0 : ids_type0) {
-        int startIndex = id_type0.getS();
-
-        // end index can be Integer.MIN_VALUE if the attribute is not really present in soap response
-        int endIndex = id_type0.getE();
-
-        if (endIndex > startIndex) {
-          for (int i = startIndex; i <= endIndex; i++) {
-            workItemsIdSet.add(i);
-          }
-        }
-        else {
-          workItemsIdSet.add(startIndex);
-        }
-      }
+    int[] starts = new int[ids_type0.length];
+    int[] ends = new int[ids_type0.length];
+    for (int i = 0; i < ids_type0.length; i++) {
+      starts[i] = ids_type0[i].getS();
+      // end index can be Integer.MIN_VALUE if the attribute is not really present in soap response
+      ends[i] = Math.max(ids_type0[i].getE(), starts[i]);
     }
-    return workItemsIdSet;
+    return new WorkItemIds(starts, ends);
   }
 
-  private List<WorkItem> pageWorkitemsByIds(Collection<Integer> workItemsIds, Object projectOrComponent, String progressTitle)
-    throws TfsException {
-    if (workItemsIds.isEmpty()) {
+  public List<WorkItem> pageWorkItemsByIds(int[] idsAsArray, Object projectOrComponent, String progressTitle) throws TfsException {
+    if (idsAsArray.length == 0) {
       return Collections.emptyList();
     }
 
-    int[] idsAsArray = new int[workItemsIds.size()];
-    int i = 0;
-
-    for (final Integer id : workItemsIds) {
-      idsAsArray[i++] = id;
-    }
-
     final com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.ArrayOfInt workitemIds =
       new com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.ArrayOfInt();
     workitemIds.set_int(idsAsArray);
@@ -1726,36 +2310,72 @@ public class VersionControlServer {
           }
         });
 
-    List<WorkItem> workItems = new ArrayList<>();
+    List<WorkItem> workItems = new ArrayList<>(idsAsArray.length);
     for (R_type0 row : pageWorkitemsByIdsResponse.getItems().getTable().getRows().getR()) {
       workItems.add(WorkItemSerialize.createFromFields(row.getF()));
     }
     return workItems;
   }
 
-  public void updateWorkItemsAfterCheckin(final String workspaceOwnerName,
-                                          final Map<WorkItem, CheckinWorkItemAction> workItems,
-                                          final int changeSet,
-                                          Object projectOrComponent, String progressTitle) throws TfsException {
-    if (workItems.isEmpty()) {
-      return;
+  /**
+   * Updates are sent in batches of {@link #WORK_ITEMS_UPDATE_BATCH_SIZE}. If a batch fails, its work items are updated one by one
+   * to find out which of them failed.
+   *
+   * @return work items that failed to update
+   */
+  public Map<WorkItem, TfsException> updateWorkItemsAfterCheckin(final String workspaceOwnerName,
+                                                                 final Map<WorkItem, CheckinWorkItemAction> workItems,
+                                                                 final int changeSet,
+                                                                 Object projectOrComponent,
+                                                                 String progressTitle) throws TfsException {
+    List<WorkItem> toUpdate = new ArrayList<>();
+    for (Map.Entry<WorkItem, CheckinWorkItemAction> entry : workItems.entrySet()) {
+      if (entry.getValue() != CheckinWorkItemAction.None) {
+        toUpdate.add(entry.getKey());
+      }
+    }
+    if (toUpdate.isEmpty()) {
+      return Collections.emptyMap();
     }
 
     String identity = readIdentity(workspaceOwnerName, projectOrComponent, progressTitle).getDisplayName();
-    for (WorkItem workItem : workItems.keySet()) {
-      CheckinWorkItemAction checkinWorkItemAction = workItems.get(workItem);
-      if (checkinWorkItemAction != CheckinWorkItemAction.None) {
-        updateWorkItem(workItem, checkinWorkItemAction, changeSet, identity, projectOrComponent, progressTitle);
+    Map<WorkItem, TfsException> failures = new LinkedHashMap<>();
+    for (int from = 0; from < toUpdate.size(); from += WORK_ITEMS_UPDATE_BATCH_SIZE) {
+      List<WorkItem> batch = toUpdate.subList(from, Math.min(from + WORK_ITEMS_UPDATE_BATCH_SIZE, toUpdate.size()));
+      List<UpdateWorkItem_type0> updates = new ArrayList<>(batch.size());
+      for (WorkItem workItem : batch) {
+        updates.add(createUpdateWorkItem(workItem, workItems.get(workItem), changeSet, identity));
+      }
+      try {
+        sendWorkItemsUpdate(updates.size() > 1 ? new WorkItemsUpdatePackage(updates) : createPackage(updates.get(0)), projectOrComponent,
+                            progressTitle);
+      }
+      catch (UserCancelledException e) {
+        throw e;
+      }
+      catch (TfsException e) {
+        if (batch.size() == 1) {
+          failures.put(batch.get(0), e);
+          continue;
+        }
+        LOG.info("Batch update of work items failed, updating one by one", e);
+        for (int i = 0; i < batch.size(); i++) {
+          try {
+            sendWorkItemsUpdate(createPackage(updates.get(i)), projectOrComponent, progressTitle);
+          }
+          catch (UserCancelledException e1) {
+            throw e1;
+          }
+          catch (TfsException e1) {
+            failures.put(batch.get(i), e1);
+          }
+        }
       }
     }
+    return failures;
   }
 
-  private void updateWorkItem(WorkItem workItem,
-                              CheckinWorkItemAction action,
-                              int changeSet,
-                              String identity,
-                              Object projectOrComponent,
-                              String progressTitle) throws TfsException {
+  private static UpdateWorkItem_type0 createUpdateWorkItem(WorkItem workItem, CheckinWorkItemAction action, int changeSet, String identity) {
     UpdateWorkItem_type0 updateWorkItem_type0 = new UpdateWorkItem_type0();
     updateWorkItem_type0.setWorkItemID(workItem.getId());
     updateWorkItem_type0.setRevision(workItem.getRevision());
@@ -1765,11 +2385,17 @@ public class VersionControlServer {
       .setColumns(WorkItemSerialize.generateColumnsForUpdateRequest(workItem.getType(), workItem.getReason(), action, identity));
     updateWorkItem_type0.setInsertText(WorkItemSerialize.generateInsertTextForUpdateRequest(action, changeSet));
     updateWorkItem_type0.setInsertResourceLink(WorkItemSerialize.generateInsertResourceLinkforUpdateRequest(changeSet));
+    return updateWorkItem_type0;
+  }
 
+  private static Package_type0 createPackage(UpdateWorkItem_type0 updateWorkItem) {
     Package_type0 package_type00 = new Package_type0();
     package_type00.setXmlns("");
-    package_type00.setUpdateWorkItem(updateWorkItem_type0);
+    package_type00.setUpdateWorkItem(updateWorkItem);
+    return package_type00;
+  }
 
+  private void sendWorkItemsUpdate(Package_type0 package_type00, Object projectOrComponent, String progressTitle) throws TfsException {
     final Package_type0E package_type_0 = new Package_type0E();
     package_type_0.setPackage(package_type00);
 
@@ -21,6 +21,7 @@ import com.microsoft.tfs.core.clients.workitem.query.WorkItemLinkInfo;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsPager;
 import org.jetbrains.tfsIntegration.ui.WorkItemsQueryResult;
 
 import java.util.*;
@@ -30,17 +31,21 @@ public class WorkItemsCheckinParameters {
   @NotNull private List<WorkItem> myWorkItems;
   @NotNull private Map<WorkItem, CheckinWorkItemAction> myActions;
   @Nullable private List<WorkItemLinkInfo> myLinks;
+  // loads the rest of work items found by the query
+  @Nullable private WorkItemsPager myPager;
 
   private WorkItemsCheckinParameters(@NotNull List<WorkItem> workItems,
                                      @NotNull Map<WorkItem, CheckinWorkItemAction> actions,
-                                     @Nullable List<WorkItemLinkInfo> links) {
+                                     @Nullable List<WorkItemLinkInfo> links,
+                                     @Nullable WorkItemsPager pager) {
     myWorkItems = workItems;
     myActions = actions;
     myLinks = links;
+    myPager = pager;
   }
 
   public WorkItemsCheckinParameters() {
-    this(Collections.emptyList(), new HashMap<>(), null);
+    this(new ArrayList<>(), new HashMap<>(), null, null);
   }
 
   @Nullable
@@ -68,12 +73,14 @@ public class WorkItemsCheckinParameters {
 
   @NotNull
   public WorkItemsCheckinParameters createCopy() {
-    return new WorkItemsCheckinParameters(new ArrayList<>(myWorkItems), new HashMap<>(myActions), getLinks());
+    return new WorkItemsCheckinParameters(new ArrayList<>(myWorkItems), new HashMap<>(myActions), getLinks(),
+                                          myPager != null ? myPager.copy() : null);
   }
 
   public void update(@NotNull WorkItemsQueryResult queryResult) {
-    myWorkItems = queryResult.getWorkItems();
+    myWorkItems = new ArrayList<>(queryResult.getWorkItems());
     myLinks = queryResult.getLinks();
+    myPager = queryResult.getPager();
     myActions.clear();
   }
 
@@ -81,6 +88,19 @@ public class WorkItemsCheckinParameters {
     myWorkItems = parameters.myWorkItems;
     myLinks = parameters.myLinks;
     myActions = parameters.myActions;
+    myPager = parameters.myPager;
+  }
+
+  /**
+   * Appends the next page of work items found by the query, see {@link #getPager()}
+   */
+  public void addWorkItems(@NotNull List<WorkItem> workItems) {
+    myWorkItems.addAll(workItems);
+  }
+
+  @Nullable
+  public WorkItemsPager getPager() {
+    return myPager;
   }
 
   @NotNull
@@ -28,6 +28,7 @@ import org.jetbrains.tfsIntegration.exceptions.TfsException;
 import org.jetbrains.tfsIntegration.exceptions.WorkspaceNotFoundException;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class WorkspaceInfo {
 
@@ -35,6 +36,9 @@ public class WorkspaceInfo {
 
   private static final Collection<String> WORKSPACE_NAME_INVALID_ENDING_CHARS = Arrays.asList(" ", ".");
 
+  // incremented whenever working folders of any workspace are replaced, tells when mapping index should be rebuilt
+  private static final AtomicLong ourMappingsModificationCount = new AtomicLong();
+
   private final ServerInfo myServerInfo;
   private final String myOwnerName;
   private final String myComputer;
@@ -177,10 +181,6 @@ public class WorkspaceInfo {
     myLoaded = true;
   }
 
-  boolean hasMappingCached(FilePath localPath, boolean considerChildMappings) {
-    return hasMapping(getWorkingFoldersCached(), localPath, considerChildMappings);
-  }
-
   boolean hasMapping(FilePath localPath, boolean considerChildMappings, Object projectOrComponent) throws TfsException {
     // post-check current owner since it might have just been changed dirung getWorkingFolders() call
     return hasMapping(getWorkingFolders(projectOrComponent), localPath, considerChildMappings) && hasCurrentOwnerAndComputer();
@@ -273,6 +273,7 @@ public class WorkspaceInfo {
 
   public void addWorkingFolderInfo(final WorkingFolderInfo workingFolderInfo) {
     myWorkingFoldersInfos.add(workingFolderInfo);
+    ourMappingsModificationCount.incrementAndGet();
   }
 
   public void addOwnerAlias(@NotNull String alias) {
@@ -282,12 +283,14 @@ public class WorkspaceInfo {
   public void removeWorkingFolderInfo(final WorkingFolderInfo folderInfo) {
     checkCurrentOwnerAndComputer();
     myWorkingFoldersInfos.remove(folderInfo);
+    ourMappingsModificationCount.incrementAndGet();
   }
 
   public void setWorkingFolders(final List<WorkingFolderInfo> workingFolders) {
     checkCurrentOwnerAndComputer();
     myWorkingFoldersInfos.clear();
     myWorkingFoldersInfos.addAll(workingFolders);
+    ourMappingsModificationCount.incrementAndGet();
   }
 
   public void saveToServer(Object projectOrComponent, WorkspaceInfo originalWorkspace) throws TfsException {
@@ -378,6 +381,11 @@ public class WorkspaceInfo {
       }
     }
     workspace.myWorkingFoldersInfos = workingFoldersInfos;
+    ourMappingsModificationCount.incrementAndGet();
+  }
+
+  static long getMappingsModificationCount() {
+    return ourMappingsModificationCount.get();
   }
 
   public WorkspaceInfo getCopy() {
@@ -44,10 +44,7 @@ import java.net.URI;
 import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 import static org.jetbrains.tfsIntegration.core.tfs.TfsUtil.forcePluginClassLoader;
 import static org.jetbrains.tfsIntegration.core.tfs.XmlConstants.*;
@@ -63,6 +60,8 @@ public class Workstation {
 
   private @Nullable Ref<FilePath> myDuplicateMappedPath;
 
+  private volatile @Nullable MappingIndex myMappingIndex;
+
   private static String ourComputerName;
 
   private Workstation() {
@@ -137,6 +136,7 @@ public class Workstation {
 
   void update() {
     invalidateDuplicateMappedPath();
+    myMappingIndex = null;
 
     Path cacheFile = getCacheFile(false);
     if (cacheFile != null) {
@@ -242,18 +242,147 @@ public class Workstation {
   public Collection<WorkspaceInfo> findWorkspacesCached(final @NotNull FilePath localPath, boolean considerChildMappings) {
     // try cached working folders first
     Collection<WorkspaceInfo> result = new ArrayList<>();
-    for (WorkspaceInfo workspace : getAllWorkspacesForCurrentOwnerAndComputer(false)) {
-      if (workspace.hasMappingCached(localPath, considerChildMappings)) {
-        result.add(workspace);
-        if (!considerChildMappings) {
-          // optimization: same local path can't be mapped in different workspaces, so don't process other workspaces
-          break;
+    for (MappingIndex.WorkspaceMappings mappings : getMappingIndex().find(localPath, considerChildMappings)) {
+      result.add(mappings.workspace);
+      if (!considerChildMappings) {
+        // optimization: same local path can't be mapped in different workspaces, so don't process other workspaces
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Index of cached working folders of all the workspaces, rebuilt if working folders or workspaces changed since it was built
+   */
+  @NotNull
+  MappingIndex getMappingIndex() {
+    List<WorkspaceInfo> workspaces = getAllWorkspacesForCurrentOwnerAndComputer(false);
+    long modificationCount = WorkspaceInfo.getMappingsModificationCount();
+    MappingIndex index = myMappingIndex;
+    if (index == null || !index.isUpToDate(workspaces, modificationCount)) {
+      index = new MappingIndex(workspaces, modificationCount);
+      myMappingIndex = index;
+    }
+    return index;
+  }
+
+  /**
+   * Same as {@link #findWorkspaces} followed by {@link WorkspaceInfo#findServerPathsByLocalPath} for every path, but working folders are
+   * reloaded from the server once per workspace and looked up in the mapping index.
+   *
+   * @param orphanPaths receives local paths for which workspace was not found
+   * @return item paths grouped by workspace
+   */
+  @NotNull
+  Map<WorkspaceInfo, List<ItemPath>> findItemPaths(Collection<? extends FilePath> localPaths,
+                                                   boolean considerChildMappings,
+                                                   Object projectOrComponent,
+                                                   Collection<FilePath> orphanPaths) throws TfsException {
+    checkDuplicateMappings();
+
+    // given paths are mapped according to cached mapping info -> reload and check with server info
+    MappingIndex cachedIndex = getMappingIndex();
+    Map<FilePath, Collection<WorkspaceInfo>> cachedWorkspaces = new HashMap<>();
+    Set<WorkspaceInfo> reloaded = new HashSet<>();
+    for (FilePath localPath : localPaths) {
+      Collection<WorkspaceInfo> workspaces = getWorkspaces(cachedIndex, localPath, considerChildMappings);
+      for (WorkspaceInfo workspace : workspaces) {
+        if (reloaded.add(workspace)) {
+          workspace.loadFromServer(projectOrComponent, false);
         }
       }
+      cachedWorkspaces.put(localPath, workspaces);
+    }
+
+    MappingIndex index = getMappingIndex();
+    boolean allWorkspacesReloaded = false;
+    Map<WorkspaceInfo, List<ItemPath>> result = new LinkedHashMap<>();
+    for (FilePath localPath : localPaths) {
+      List<MappingIndex.WorkspaceMappings> found = find(index, localPath, considerChildMappings);
+      if (index != cachedIndex) {
+        for (WorkspaceInfo workspace : cachedWorkspaces.get(localPath)) {
+          if (!ContainerUtil.exists(found, mappings -> mappings.workspace == workspace)) {
+            throw new WorkspaceHasNoMappingException(workspace);
+          }
+        }
+      }
+      if (found.isEmpty() && !allWorkspacesReloaded) {
+        // not found in cached info, but workspaces may be out of date -> reload all of them once and search again
+        reloadAllWorkspaces(projectOrComponent);
+        allWorkspacesReloaded = true;
+        index = getMappingIndex();
+        found = find(index, localPath, considerChildMappings);
+      }
+
+      boolean mapped = false;
+      for (MappingIndex.WorkspaceMappings mappings : found) {
+        mapped |= addItemPaths(mappings, localPath, considerChildMappings, projectOrComponent, result);
+      }
+      if (!mapped) {
+        orphanPaths.add(localPath);
+      }
     }
     return result;
   }
 
+  private void reloadAllWorkspaces(Object projectOrComponent) {
+    Collection<ServerInfo> serversToSkip = new ArrayList<>();
+    for (WorkspaceInfo workspace : getAllWorkspacesForCurrentOwnerAndComputer(true)) {
+      if (serversToSkip.contains(workspace.getServer())) {
+        // if server is somehow unavailable, don't try every workspace on it
+        continue;
+      }
+      try {
+        workspace.loadFromServer(projectOrComponent, false);
+      }
+      catch (TfsException e) {
+        // if some server failed, try next one, otherwise user will get strange error messages
+        serversToSkip.add(workspace.getServer());
+      }
+    }
+  }
+
+  private static Collection<WorkspaceInfo> getWorkspaces(MappingIndex index, FilePath localPath, boolean considerChildMappings) {
+    return ContainerUtil.map(find(index, localPath, considerChildMappings), mappings -> mappings.workspace);
+  }
+
+  private static List<MappingIndex.WorkspaceMappings> find(MappingIndex index, FilePath localPath, boolean considerChildMappings) {
+    List<MappingIndex.WorkspaceMappings> found = index.find(localPath, considerChildMappings);
+    // same local path can't be mapped in different workspaces
+    return !considerChildMappings && found.size() > 1 ? found.subList(0, 1) : found;
+  }
+
+  private static boolean addItemPaths(MappingIndex.WorkspaceMappings mappings,
+                                      FilePath localPath,
+                                      boolean considerChildMappings,
+                                      Object projectOrComponent,
+                                      Map<WorkspaceInfo, List<ItemPath>> result) throws TfsException {
+    final String serverPath = mappings.getServerPath(localPath);
+    Collection<String> serverPaths;
+    if (serverPath != null) {
+      serverPaths = Collections.singletonList(serverPath);
+    }
+    else if (considerChildMappings) {
+      serverPaths = ContainerUtil.map(mappings.childMappings, WorkingFolderInfo::getServerPath);
+    }
+    else {
+      return false;
+    }
+
+    List<ItemPath> itemPaths = result.computeIfAbsent(mappings.workspace, workspace -> new ArrayList<>());
+    if (!considerChildMappings) {
+      itemPaths.add(new ItemPath(localPath, serverPath));
+    }
+    else {
+      for (String path : serverPaths) {
+        //noinspection ConstantConditions
+        itemPaths.add(new ItemPath(mappings.workspace.findLocalPathByServerPath(path, localPath.isDirectory(), projectOrComponent), path));
+      }
+    }
+    return true;
+  }
+
   @NotNull
   public Collection<WorkspaceInfo> findWorkspaces(final @NotNull FilePath localPath,
                                                   boolean considerChildMappings,
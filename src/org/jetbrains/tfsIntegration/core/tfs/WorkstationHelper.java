@@ -18,12 +18,16 @@ package org.jetbrains.tfsIntegration.core.tfs;
 
 import com.intellij.openapi.vcs.FilePath;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.webservice.TfsRequestManager;
 
 import java.util.*;
 
 // TODO: rename this class
 public class WorkstationHelper {
 
+  // workspaces are processed concurrently only if enabled here and the caller allows it
+  private static final boolean CONCURRENT_WORKSPACES = Boolean.getBoolean("org.jetbrains.tfsIntegration.concurrentWorkspaces");
+
   private WorkstationHelper() {
   }
 
@@ -42,43 +46,39 @@ public class WorkstationHelper {
                                                    boolean considerChildMappings,
                                                    Object projectOrComponent,
                                                    VoidProcessDelegate processor) throws TfsException {
+    return processByWorkspaces(localPaths, considerChildMappings, projectOrComponent, false, processor);
+  }
+
+  /**
+   * @param concurrently true if the processor may be called for different workspaces at the same time, which happens only
+   *                     when <code>org.jetbrains.tfsIntegration.concurrentWorkspaces</code> is set
+   * @return local paths for which workspace was not found (orphan paths)
+   * @throws TfsException the first error of the processor, workspaces not processed yet are skipped then
+   */
+  public static List<FilePath> processByWorkspaces(Collection<? extends FilePath> localPaths,
+                                                   boolean considerChildMappings,
+                                                   Object projectOrComponent,
+                                                   boolean concurrently,
+                                                   final VoidProcessDelegate processor) throws TfsException {
     List<FilePath> orphanPaths = new ArrayList<>();
-    Map<WorkspaceInfo, List<FilePath>> workspace2localPaths = new HashMap<>();
-    for (FilePath localPath : localPaths) {
-      Collection<WorkspaceInfo> workspaces = Workstation.getInstance().findWorkspaces(localPath, considerChildMappings, projectOrComponent);
-      if (!workspaces.isEmpty()) {
-        for (WorkspaceInfo workspace : workspaces) {
-          List<FilePath> workspaceLocalPaths = workspace2localPaths.get(workspace);
-          if (workspaceLocalPaths == null) {
-            workspaceLocalPaths = new ArrayList<>();
-            workspace2localPaths.put(workspace, workspaceLocalPaths);
-          }
-          workspaceLocalPaths.add(localPath);
-        }
-      }
-      else {
-        orphanPaths.add(localPath);
+    Map<WorkspaceInfo, List<ItemPath>> workspace2itemPaths =
+      Workstation.getInstance().findItemPaths(localPaths, considerChildMappings, projectOrComponent, orphanPaths);
+
+    if (!concurrently || !CONCURRENT_WORKSPACES) {
+      for (Map.Entry<WorkspaceInfo, List<ItemPath>> entry : workspace2itemPaths.entrySet()) {
+        processor.executeRequest(entry.getKey(), entry.getValue());
       }
+      return orphanPaths;
     }
 
-    for (WorkspaceInfo workspace : workspace2localPaths.keySet()) {
-      List<FilePath> currentLocalPaths = workspace2localPaths.get(workspace);
-      List<ItemPath> currentItemPaths = new ArrayList<>(currentLocalPaths.size());
-      for (FilePath localPath : currentLocalPaths) {
-        Collection<String> serverPaths = workspace.findServerPathsByLocalPath(localPath, considerChildMappings, projectOrComponent);
-        if (!considerChildMappings) {
-          currentItemPaths.add(new ItemPath(localPath, serverPaths.iterator().next()));
-        }
-        else {
-          for (String serverPath : serverPaths) {
-            //noinspection ConstantConditions
-            currentItemPaths.add(
-              new ItemPath(workspace.findLocalPathByServerPath(serverPath, localPath.isDirectory(), projectOrComponent), serverPath));
-          }
-        }
-      }
-      processor.executeRequest(workspace, currentItemPaths);
+    List<TfsExecutionUtil.ConcurrentTask> tasks = new ArrayList<>(workspace2itemPaths.size());
+    Set<ServerInfo> servers = new HashSet<>();
+    for (final Map.Entry<WorkspaceInfo, List<ItemPath>> entry : workspace2itemPaths.entrySet()) {
+      tasks.add(() -> processor.executeRequest(entry.getKey(), entry.getValue()));
+      servers.add(entry.getKey().getServer());
     }
+    // workspaces of the same server share its request limit, so there's no point to run more of them at once
+    TfsExecutionUtil.executeConcurrently("TFS workspaces", TfsRequestManager.getParallelism(servers.size()), tasks);
     return orphanPaths;
   }
 
@@ -16,7 +16,10 @@
 
 package org.jetbrains.tfsIntegration.core.tfs.conflicts;
 
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Trinity;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.CurrentContentRevision;
@@ -24,6 +27,7 @@ import com.intellij.openapi.vcs.update.FileGroup;
 import com.intellij.openapi.vcs.update.UpdatedFiles;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ArrayUtilRt;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.vcsUtil.VcsRunnable;
 import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
@@ -32,6 +36,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSBundle;
 import org.jetbrains.tfsIntegration.core.TFSVcs;
 import org.jetbrains.tfsIntegration.core.revision.TFSContentRevision;
+import org.jetbrains.tfsIntegration.core.revision.TFSContentStoreFactory;
 import org.jetbrains.tfsIntegration.core.tfs.*;
 import org.jetbrains.tfsIntegration.core.tfs.operations.ApplyGetOperations;
 import org.jetbrains.tfsIntegration.core.tfs.operations.ApplyProgress;
@@ -39,13 +44,26 @@ import org.jetbrains.tfsIntegration.exceptions.TfsException;
 import org.jetbrains.tfsIntegration.ui.ContentTriplet;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ResolveConflictHelper {
+  private static final Logger LOG = Logger.getInstance(ResolveConflictHelper.class.getName());
+
+  private static final int PREFETCH_PARALLELISM = Integer.getInteger("org.jetbrains.tfsIntegration.conflictsPrefetchParallelism", 4);
+
   private final @NotNull Project myProject;
   private final @Nullable UpdatedFiles myUpdatedFiles;
   private final Map<Conflict, WorkspaceInfo> myConflict2Workspace = new HashMap<>();
+  // revisions to merge keyed by workspace, changeset and item id
+  private final Map<Trinity<WorkspaceInfo, Integer, Integer>, TFSContentRevision> myRevisions = new ConcurrentHashMap<>();
+  private final Map<Trinity<WorkspaceInfo, Integer, Integer>, FutureTask<?>> myPrefetching = new ConcurrentHashMap<>();
+  // bytes that can still be prefetched without evicting revisions prefetched earlier
+  private final AtomicLong myPrefetchBudget = new AtomicLong();
+  private @Nullable ExecutorService myPrefetchExecutor;
 
   public ResolveConflictHelper(final Project project,
                                Map<WorkspaceInfo, Collection<Conflict>> workspace2Conflicts,
@@ -80,14 +98,14 @@ public class ResolveConflictHelper {
             byte[] current;
             byte[] last;
             if (conflict.getCtype() == ConflictType.Merge) {
-              current = TFSContentRevision.create(myProject, workspace, conflict.getTver(), conflict.getTitemid()).getContentAsBytes();
-              last = TFSContentRevision.create(myProject, workspace, conflict.getYver(), conflict.getYitemid()).getContentAsBytes();
+              current = getContent(workspace, conflict.getTver(), conflict.getTitemid());
+              last = getContent(workspace, conflict.getYver(), conflict.getYitemid());
             }
             else {
               current = ((CurrentContentRevision)CurrentContentRevision.create(localPath)).getContentAsBytes();
-              last = TFSContentRevision.create(myProject, workspace, conflict.getTver(), conflict.getTitemid()).getContentAsBytes();
+              last = getContent(workspace, conflict.getTver(), conflict.getTitemid());
             }
-            byte[] original = TFSContentRevision.create(myProject, workspace, conflict.getBver(), conflict.getBitemid()).getContentAsBytes();
+            byte[] original = getContent(workspace, conflict.getBver(), conflict.getBitemid());
             contentTriplet.baseContent = original != null ? original : ArrayUtilRt.EMPTY_BYTE_ARRAY;
             contentTriplet.localContent = current != null ? current : ArrayUtilRt.EMPTY_BYTE_ARRAY;
             contentTriplet.serverContent = last != null ? last : ArrayUtilRt.EMPTY_BYTE_ARRAY;
@@ -149,6 +167,106 @@ public class ResolveConflictHelper {
     }
   }
 
+  /**
+   * Starts downloading revisions needed to merge content conflicts in background, so that merge doesn't have to wait for them.
+   * Revisions are downloaded to the revision cache up to its capacity; the ones that failed to download or didn't fit are
+   * loaded on merge.
+   */
+  public void startPrefetch() {
+    if (myPrefetchExecutor != null) {
+      return;
+    }
+    myPrefetchExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS conflicts content", PREFETCH_PARALLELISM);
+    myPrefetchBudget.set(TFSContentStoreFactory.getCapacity());
+    for (Map.Entry<Conflict, WorkspaceInfo> entry : myConflict2Workspace.entrySet()) {
+      Conflict conflict = entry.getKey();
+      if (conflict.getYtype() != ItemType.File || !canMerge(conflict) || !isContentConflict(conflict)) {
+        continue;
+      }
+      WorkspaceInfo workspace = entry.getValue();
+      prefetch(workspace, conflict.getTver(), conflict.getTitemid());
+      if (conflict.getCtype() == ConflictType.Merge) {
+        prefetch(workspace, conflict.getYver(), conflict.getYitemid());
+      }
+      prefetch(workspace, conflict.getBver(), conflict.getBitemid());
+    }
+  }
+
+  /**
+   * Cancels downloads not started yet, running ones are completed in background
+   */
+  public void stopPrefetch() {
+    if (myPrefetchExecutor == null) {
+      return;
+    }
+    for (Future<?> future : myPrefetching.values()) {
+      future.cancel(false);
+    }
+    myPrefetchExecutor.shutdown();
+  }
+
+  private void prefetch(final WorkspaceInfo workspace, final int changeset, final int itemId) {
+    Trinity<WorkspaceInfo, Integer, Integer> key = Trinity.create(workspace, changeset, itemId);
+    if (myPrefetching.containsKey(key)) {
+      return;
+    }
+    // put the task before it is started so that merge waits for it
+    FutureTask<Void> task = new FutureTask<>(() -> {
+      try {
+        TFSContentRevision revision = getRevision(workspace, changeset, itemId);
+        if (myPrefetchBudget.addAndGet(-revision.getSize()) < 0) {
+          return;
+        }
+        InputStream stream = revision.getContentAsStream();
+        if (stream != null) {
+          stream.close();
+        }
+      }
+      catch (TfsException | VcsException | IOException e) {
+        LOG.debug("Failed to prefetch revision " + changeset + " of item " + itemId, e);
+      }
+    }, null);
+    myPrefetching.put(key, task);
+    //noinspection ConstantConditions
+    myPrefetchExecutor.execute(task);
+  }
+
+  @Nullable
+  private byte[] getContent(WorkspaceInfo workspace, int changeset, int itemId) throws TfsException, VcsException {
+    FutureTask<?> prefetch = myPrefetching.get(Trinity.create(workspace, changeset, itemId));
+    if (prefetch != null) {
+      // don't wait for the prefetch queued behind the others: run it here unless it is started already
+      prefetch.run();
+      try {
+        TfsExecutionUtil.waitFor(prefetch);
+      }
+      catch (ProcessCanceledException e) {
+        throw e;
+      }
+      catch (RuntimeException e) {
+        // loaded again below
+        LOG.debug(e);
+      }
+    }
+    return getRevision(workspace, changeset, itemId).getContentAsBytes();
+  }
+
+  private TFSContentRevision getRevision(WorkspaceInfo workspace, int changeset, int itemId) throws TfsException {
+    try {
+      return myRevisions.computeIfAbsent(Trinity.create(workspace, changeset, itemId), key -> {
+        try {
+          return TFSContentRevision.create(myProject, workspace, changeset, itemId);
+        }
+        catch (TfsException e) {
+          throw new CompletionException(e);
+        }
+      });
+    }
+    catch (CompletionException e) {
+      throw (TfsException)e.getCause();
+    }
+  }
+
   public void acceptYours(final @NotNull Conflict conflict) throws TfsException, VcsException {
     String localPath =
       VersionControlPath.localPathFromTfsRepresentation(conflict.getSrclitem() != null ? conflict.getSrclitem() : conflict.getTgtlitem());
@@ -16,6 +16,7 @@
 
 package org.jetbrains.tfsIntegration.core.tfs.operations;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
@@ -37,10 +38,10 @@ import org.jetbrains.tfsIntegration.core.TFSVcs;
 import org.jetbrains.tfsIntegration.core.tfs.*;
 import org.jetbrains.tfsIntegration.exceptions.OperationFailedException;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
+import org.jetbrains.tfsIntegration.webservice.WebServiceHelper;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -60,7 +61,12 @@ public class ApplyGetOperations {
   private final @Nullable UpdatedFiles myUpdatedFiles;
   private final Collection<VcsException> myErrors = new ArrayList<>();
   private final Collection<LocalVersionUpdate> myUpdateLocalVersions = new ArrayList<>();
+  // operations applied to local files, to update the local baseline with
+  private final Collection<GetOperation> myAppliedOperations = new ArrayList<>();
   private final DownloadMode myDownloadMode;
+  // null if files are downloaded one after another
+  private @Nullable DownloadQueue myDownloads;
+  private GetOperationsUtil.SourcePathsUpdater mySourcePaths;
 
   public enum DownloadMode {
     FORCE,
@@ -112,9 +118,17 @@ public class ApplyGetOperations {
       return;
     }
 
-    // parent folders modificating operations should be processed before children to update affected child paths correctly
-    List<GetOperation> sortedOperations = new ArrayList<>(myOperations);//GetOperationsUtil.sortGetOperations(myOperations);
-    // TODO do we need to sort them or they come in apply order?
+    // operations are applied in the order the server reports them: it moves children out of a folder before deleting it and
+    // creates folders before their contents, which ordering by source path alone would break
+    List<GetOperation> sortedOperations = new ArrayList<>(myOperations);
+    mySourcePaths = new GetOperationsUtil.SourcePathsUpdater(sortedOperations);
+
+    // file system changes are applied in order, only fetching the content is done in parallel
+    if (WebServiceHelper.PARALLEL_TRANSFERS > 1 &&
+        myDownloadMode != DownloadMode.FORBID &&
+        !ApplicationManager.getApplication().isDispatchThread()) {
+      myDownloads = new DownloadQueue(WebServiceHelper.PARALLEL_TRANSFERS, myProgress, myErrors);
+    }
 
     try {
       for (int i = 0; i < sortedOperations.size(); i++) {
@@ -123,6 +137,10 @@ public class ApplyGetOperations {
         }
 
         GetOperation operationToExecute = sortedOperations.get(i);
+        mySourcePaths.updateSourcePath(operationToExecute);
+        if (myDownloads != null) {
+          myDownloads.waitForAffected(getAffectedFiles(operationToExecute));
+        }
 
         String currentPath = VersionControlPath.localPathFromTfsRepresentation(
           operationToExecute.getTlocal() != null ? operationToExecute.getTlocal() : operationToExecute.getSlocal());
@@ -131,7 +149,7 @@ public class ApplyGetOperations {
             .findLocalPathByServerPath(operationToExecute.getTitem(), operationToExecute.getType() == ItemType.Folder, myProject);
           currentPath = unexistingPath.getPresentableUrl();
         }
-        myProgress.setFraction(i / sortedOperations.size());
+        myProgress.setFraction((double)i / sortedOperations.size());
         myProgress.setText(currentPath);
 
         if (operationToExecute.getCnflct()) {
@@ -164,18 +182,40 @@ public class ApplyGetOperations {
         else {
           processFolderChange(operationToExecute);
           if (!operationToExecute.getSlocal().equals(operationToExecute.getTlocal())) {
-            GetOperationsUtil.updateSourcePaths(sortedOperations, i, operationToExecute);
+            mySourcePaths.folderRenamed(operationToExecute);
           }
         }
       }
 
+      if (myDownloads != null) {
+        myDownloads.waitForAll();
+      }
       myWorkspace.getServer().getVCS()
         .updateLocalVersions(myWorkspace.getName(), myWorkspace.getOwnerName(), myUpdateLocalVersions, myProject,
                              TFSBundle.message("updating.local.version"));
+      if (LocalBaseline.ENABLED && myWorkspace.isLocal()) {
+        LocalBaseline.getInstance(myWorkspace).update(myAppliedOperations);
+      }
     }
     catch (TfsException e) {
       myErrors.add(new VcsException(e));
     }
+    finally {
+      if (myDownloads != null) {
+        myDownloads.dispose();
+      }
+    }
+  }
+
+  private static Collection<File> getAffectedFiles(GetOperation operation) {
+    Collection<File> result = new ArrayList<>(2);
+    if (operation.getSlocal() != null) {
+      result.add(VersionControlPath.getFile(operation.getSlocal()));
+    }
+    if (operation.getTlocal() != null) {
+      result.add(VersionControlPath.getFile(operation.getTlocal()));
+    }
+    return result;
   }
 
   private void processDeleteFile(final GetOperation operation) throws TfsException {
@@ -252,10 +292,10 @@ public class ApplyGetOperations {
       return;
     }
 
-    if (downloadFile(operation)) {
+    downloadFile(operation, () -> {
       updateLocalVersion(operation);
       addToGroup(FileGroup.CREATED_ID, target, operation);
-    }
+    });
   }
 
   private void processCreateFolder(final GetOperation operation) throws TfsException {
@@ -331,14 +371,22 @@ public class ApplyGetOperations {
     if (myDownloadMode == DownloadMode.FORCE || (myDownloadMode != DownloadMode.MERGE && operation.getLver() != operation.getSver())) {
       // remove source, create target
       // don't download file if undoing Add
-      if ((source.equals(target) || deleteFile(source)) && (change.contains(ChangeType_type0.Add) || downloadFile(operation))) {
-        updateLocalVersion(operation);
-        if (source.equals(target)) {
-          addToGroup(FileGroup.UPDATED_ID, target, operation);
+      if (source.equals(target) || deleteFile(source)) {
+        Runnable onSuccess = () -> {
+          updateLocalVersion(operation);
+          if (source.equals(target)) {
+            addToGroup(FileGroup.UPDATED_ID, target, operation);
+          }
+          else {
+            addToGroup(FileGroup.REMOVED_FROM_REPOSITORY_ID, source, operation);
+            addToGroup(FileGroup.CREATED_ID, target, operation);
+          }
+        };
+        if (change.contains(ChangeType_type0.Add)) {
+          onSuccess.run();
         }
         else {
-          addToGroup(FileGroup.REMOVED_FROM_REPOSITORY_ID, source, operation);
-          addToGroup(FileGroup.CREATED_ID, target, operation);
+          downloadFile(operation, onSuccess);
         }
       }
       return;
@@ -356,10 +404,10 @@ public class ApplyGetOperations {
         // source & target not exist
         // don't create file if undoing locally missing scheduled for addition file
         if (!change.contains(ChangeType_type0.Add) || !source.equals(target) || operation.getLver() != operation.getSver()) {
-          if (downloadFile(operation)) {
+          downloadFile(operation, () -> {
             addToGroup(FileGroup.CREATED_ID, target, operation);
             updateLocalVersion(operation);
-          }
+          });
         }
       }
     }
@@ -468,8 +516,9 @@ public class ApplyGetOperations {
           else {
             boolean childWillBeDeletedAnyway = false;
             for (GetOperation operation : myOperations) {
-              if (operation.getSlocal() != null &&
-                  VersionControlPath.getFile(operation.getSlocal()).equals(child) &&
+              String sourcePath = mySourcePaths.getSourcePath(operation);
+              if (sourcePath != null &&
+                  VersionControlPath.getFile(sourcePath).equals(child) &&
                   operation.getTlocal() == null) {
                 childWillBeDeletedAnyway = true;
                 break;
@@ -511,34 +560,41 @@ public class ApplyGetOperations {
     }
   }
 
-  private boolean downloadFile(final GetOperation operation) throws TfsException {
+  /**
+   * @param onSuccess invoked once the file is written, may be invoked later if files are downloaded in parallel
+   */
+  private void downloadFile(final GetOperation operation, Runnable onSuccess) throws TfsException {
     TFSVcs.assertTrue(operation.getDurl() != null,
                       "Null download url for " + VersionControlPath.localPathFromTfsRepresentation(operation.getTlocal()));
 
     if (myDownloadMode == DownloadMode.FORBID) {
-      return true;
+      onSuccess.run();
+      return;
     }
 
     final File target = VersionControlPath.getFile(operation.getTlocal());
+    // content is verified against the hash while being written
+    final byte[] md5 = TfsFileUtil.getHashValue(operation.getHashValue());
+    DownloadQueue.Downloader downloader = file -> myWorkspace.getServer().getVCS()
+      .downloadItem(myProject, operation.getDurl(), file, md5, TFSBundle.message("downloading.0", target.getName()));
+    if (myDownloads != null) {
+      myDownloads.submit(target, downloader, onSuccess);
+      return;
+    }
+
     try {
-      TfsFileUtil.setFileContent(target, new TfsFileUtil.ContentWriter() {
-        @Override
-        public void write(final OutputStream outputStream) throws TfsException {
-          myWorkspace.getServer().getVCS()
-            .downloadItem(myProject, operation.getDurl(), outputStream, TFSBundle.message("downloading.0", target.getName()));
-        }
-      });
-      if (!target.setReadOnly()) {
+      TFSVcs.assertTrue(!target.isDirectory(), target + " expected to be a file");
+      // the target is kept if the download fails or its content doesn't match the hash
+      if (!DownloadQueue.download(target, downloader)) {
         String errorMessage = MessageFormat.format("Cannot write to file ''{0}''", target.getPath());
         myErrors.add(new VcsException(errorMessage));
-        return false;
+        return;
       }
-      return true;
+      onSuccess.run();
     }
     catch (IOException e) {
       String errorMessage = MessageFormat.format("Cannot write to file ''{0}'': {1}", target.getPath(), e.getMessage());
       myErrors.add(new VcsException(errorMessage));
-      return false;
     }
   }
 
@@ -585,6 +641,7 @@ public class ApplyGetOperations {
 
   private void updateLocalVersion(GetOperation operation) {
     myUpdateLocalVersions.add(VersionControlServer.getLocalVersionUpdate(operation));
+    myAppliedOperations.add(operation);
   }
 
 }
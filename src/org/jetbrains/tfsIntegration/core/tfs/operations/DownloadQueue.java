@@ -0,0 +1,218 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs.operations;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Downloads file contents on a bounded pool while the caller keeps applying get operations one after another.
+ * Every file is downloaded into a temporary file next to the target and moved into place once complete.
+ * <p/>
+ * All methods should be called from the thread that submits downloads, completion callbacks and errors reporting
+ * are performed on that thread too.
+ */
+class DownloadQueue {
+  private static final Logger LOG = Logger.getInstance(DownloadQueue.class.getName());
+
+  @SuppressWarnings({"HardCodedStringLiteral"}) private static final String TEMP_FILE_SUFFIX = ".tfsdownload";
+
+  interface Downloader {
+    void download(File file) throws TfsException, IOException;
+  }
+
+  private static class Download {
+    private final File myTarget;
+    private final Runnable myOnSuccess;
+    @Nullable private volatile TfsException myTfsError;
+    @Nullable private volatile String myError;
+    private volatile boolean myCancelled;
+
+    Download(File target, Runnable onSuccess) {
+      myTarget = target;
+      myOnSuccess = onSuccess;
+    }
+
+    void run(Downloader downloader) {
+      try {
+        if (!download(myTarget, downloader)) {
+          myError = MessageFormat.format("Cannot write to file ''{0}''", myTarget.getPath());
+        }
+      }
+      catch (TfsException e) {
+        myTfsError = e;
+      }
+      catch (IOException e) {
+        myError = MessageFormat.format("Cannot write to file ''{0}'': {1}", myTarget.getPath(), e.getMessage());
+      }
+      catch (ProcessCanceledException e) {
+        myCancelled = true;
+      }
+    }
+  }
+
+  /**
+   * Downloads into a temporary file next to the target and moves it into place once complete, so that a failed download
+   * leaves the target intact. The target is made read-only.
+   *
+   * @return false if the target could not be made writable or read-only
+   */
+  static boolean download(File target, Downloader downloader) throws TfsException, IOException {
+    File temp = FileUtil.createTempFile(target.getParentFile(), target.getName(), TEMP_FILE_SUFFIX, true);
+    try {
+      downloader.download(temp);
+      if (target.exists() && !target.canWrite() && !target.setWritable(true)) {
+        return false;
+      }
+      FileUtil.rename(temp, target);
+    }
+    finally {
+      if (temp.exists()) {
+        FileUtil.delete(temp);
+      }
+    }
+    return target.setReadOnly();
+  }
+
+  private final ExecutorService myExecutor;
+  private final int myMaxPending;
+  private final ApplyProgress myProgress;
+  @Nullable private final ProgressIndicator myProgressIndicator;
+  private final Collection<VcsException> myErrors;
+
+  // accessed from the caller thread only
+  private final Map<File, Download> myPending = new HashMap<>();
+  private final BlockingQueue<Download> myCompleted = new LinkedBlockingQueue<>();
+
+  DownloadQueue(int parallelism, @NotNull ApplyProgress progress, Collection<VcsException> errors) {
+    myExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("TFS downloads", parallelism);
+    // let downloads queue up a bit so that workers don't wait for the caller
+    myMaxPending = parallelism * 4;
+    myProgress = progress;
+    myProgressIndicator = ProgressManager.getInstance().getProgressIndicator();
+    myErrors = errors;
+  }
+
+  /**
+   * @param onSuccess invoked on the caller thread after the content is written to the target file
+   */
+  void submit(@NotNull File target, @NotNull Downloader downloader, @NotNull Runnable onSuccess)
+    throws TfsException {
+    waitUntil(() -> !myPending.containsKey(target) && myPending.size() < myMaxPending);
+
+    final Download download = new Download(target, onSuccess);
+    myPending.put(target, download);
+    myExecutor.execute(() -> {
+      try {
+        ProgressManager.getInstance().executeProcessUnderProgress(() -> download.run(downloader), myProgressIndicator);
+      }
+      catch (RuntimeException e) {
+        LOG.warn(e);
+        download.myError = MessageFormat.format("Cannot download file ''{0}'': {1}", target.getPath(), e.getMessage());
+      }
+      finally {
+        myCompleted.add(download);
+      }
+    });
+  }
+
+  /**
+   * Waits for downloads into any of the given paths, their children or parents
+   */
+  void waitForAffected(@NotNull Collection<File> paths) throws TfsException {
+    if (paths.isEmpty()) {
+      return;
+    }
+    waitUntil(() -> {
+      for (File pending : myPending.keySet()) {
+        for (File path : paths) {
+          if (FileUtil.isAncestor(path, pending, false) || FileUtil.isAncestor(pending, path, false)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    });
+  }
+
+  void waitForAll() throws TfsException {
+    waitUntil(myPending::isEmpty);
+  }
+
+  /**
+   * Invokes callbacks of completed downloads without waiting
+   */
+  void processCompleted() throws TfsException {
+    Download download;
+    while ((download = myCompleted.poll()) != null) {
+      complete(download);
+    }
+  }
+
+  void dispose() {
+    // downloads not yet started are dropped, running ones clean up their temporary files
+    myExecutor.shutdownNow();
+  }
+
+  private void waitUntil(BooleanSupplier condition) throws TfsException {
+    processCompleted();
+    // pending downloads change only when completed ones are processed
+    while (!condition.getAsBoolean()) {
+      complete(TfsExecutionUtil.waitFor(myCompleted::poll, () -> {
+        if (myProgress.isCancelled()) {
+          throw new ProcessCanceledException();
+        }
+      }));
+    }
+  }
+
+  private void complete(Download download) throws TfsException {
+    myPending.remove(download.myTarget);
+    if (download.myCancelled) {
+      throw new ProcessCanceledException();
+    }
+    if (download.myTfsError != null) {
+      throw download.myTfsError;
+    }
+    if (download.myError != null) {
+      myErrors.add(new VcsException(download.myError));
+    }
+    else {
+      download.myOnSuccess.run();
+    }
+  }
+}
@@ -16,45 +16,173 @@
 
 package org.jetbrains.tfsIntegration.core.tfs.operations;
 
-import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.text.StringUtil;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSVcs;
-import org.jetbrains.tfsIntegration.core.tfs.VersionControlPath;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 public class GetOperationsUtil {
-  static List<GetOperation> sortGetOperations(Collection<? extends GetOperation> getOperations) {
+
+  private static final String LOCAL_PATH_SEPARATOR = "\\";
+  private static final String LOCAL_PATH_SEPARATORS_REGEX = "[\\\\/]";
+
+  private static class PathNode {
+    @Nullable private PathNode myParent;
+    @NotNull private String myName;
+    // keep insertion order so that unrelated operations are not reordered
+    private final Map<String, PathNode> myChildren = new LinkedHashMap<>();
+    private List<GetOperation> myOperations;
+
+    PathNode(@Nullable PathNode parent, @NotNull String name) {
+      myParent = parent;
+      myName = name;
+    }
+
+    @NotNull
+    PathNode getOrCreateChild(@NotNull String name) {
+      PathNode child = myChildren.get(getKey(name));
+      if (child == null) {
+        child = new PathNode(this, name);
+        myChildren.put(getKey(name), child);
+      }
+      return child;
+    }
+
+    @NotNull
+    PathNode getOrCreateDescendant(String[] components, int count) {
+      PathNode node = this;
+      for (int i = 0; i < count; i++) {
+        node = node.getOrCreateChild(components[i]);
+      }
+      return node;
+    }
+
+    void moveTo(@NotNull PathNode newParent, @NotNull String newName) {
+      if (myParent != null && myParent.myChildren.get(getKey(myName)) == this) {
+        myParent.myChildren.remove(getKey(myName));
+      }
+      myParent = newParent;
+      myName = newName;
+      newParent.myChildren.put(getKey(newName), this);
+    }
+
+    @NotNull
+    String getPath() {
+      List<String> components = new ArrayList<>();
+      for (PathNode node = this; node.myParent != null; node = node.myParent) {
+        components.add(node.myName);
+      }
+      Collections.reverse(components);
+      return StringUtil.join(components, LOCAL_PATH_SEPARATOR);
+    }
+
+    private static String getKey(String name) {
+      return SystemInfo.isFileSystemCaseSensitive ? name : StringUtil.toLowerCase(name);
+    }
+  }
+
+  private static String[] getPathComponents(@NotNull String localPath) {
+    return localPath.split(LOCAL_PATH_SEPARATORS_REGEX, -1);
+  }
+
+  /**
+   * Orders operations so that operations on a parent folder go before operations on its children.
+   * Operations with no source path, including the ones that only update the local version, go last. Relative order of
+   * unrelated operations is preserved where possible.
+   * <p/>
+   * Not suitable for operations reported by the server for a get: a folder delete would go before the moves that take its
+   * children out, so those are applied in the server order.
+   */
+  public static List<GetOperation> sortGetOperations(Collection<? extends GetOperation> getOperations) {
+    PathNode root = new PathNode(null, "");
+    List<GetOperation> noSource = new ArrayList<>();
+    for (GetOperation operation : getOperations) {
+      if (operation.getSlocal() == null) {
+        noSource.add(operation);
+        continue;
+      }
+      String[] components = getPathComponents(operation.getSlocal());
+      PathNode node = root.getOrCreateDescendant(components, components.length);
+      if (node.myOperations == null) {
+        node.myOperations = new ArrayList<>(1);
+      }
+      node.myOperations.add(operation);
+    }
+
     List<GetOperation> result = new ArrayList<>(getOperations.size());
-    for (GetOperation newOperation : getOperations) {
-      TFSVcs.assertTrue(newOperation.getSlocal() != null || newOperation.getTlocal() != null);
-      int positionToInsert = result.size();
-      if (newOperation.getSlocal() != null) {
-        final File newOpPath = VersionControlPath.getFile(newOperation.getSlocal());
-        for (int i = 0; i < result.size(); i++) {
-          final GetOperation existingOperation = result.get(i);
-          if (existingOperation.getSlocal() == null ||
-              FileUtil.isAncestor(newOpPath, VersionControlPath.getFile(existingOperation.getSlocal()), false)) {
-            positionToInsert = i;
-            break;
-          }
-        }
+    // pre-order traversal
+    Deque<Iterator<PathNode>> stack = new ArrayDeque<>();
+    stack.push(root.myChildren.values().iterator());
+    while (!stack.isEmpty()) {
+      Iterator<PathNode> children = stack.peek();
+      if (!children.hasNext()) {
+        stack.pop();
+        continue;
+      }
+      PathNode node = children.next();
+      if (node.myOperations != null) {
+        result.addAll(node.myOperations);
+      }
+      if (!node.myChildren.isEmpty()) {
+        stack.push(node.myChildren.values().iterator());
       }
-      result.add(positionToInsert, newOperation);
     }
+    result.addAll(noSource);
     return result;
   }
 
-  public static void updateSourcePaths(final List<? extends GetOperation> sortedOperations, final int index, final GetOperation operation) {
-    // TODO: replaceFirst to handle unix paths: problem if replace /a -> /aa in /a/a/a
-    for (GetOperation operationToUpdate : sortedOperations.subList(index + 1, sortedOperations.size())) {
-      if (operationToUpdate.getSlocal() != null) {
-        final String updated = operationToUpdate.getSlocal().replace(operation.getSlocal(), operation.getTlocal());
-        operationToUpdate.setSlocal(updated);
+  /**
+   * Tracks folder renames performed while applying operations and rebases source paths of the remaining operations.
+   * Source paths are expected to be relative to the local state before any operation is applied. They are updated
+   * lazily, one operation at a time, in O(path depth).
+   */
+  public static class SourcePathsUpdater {
+    private final PathNode myRoot = new PathNode(null, "");
+    private final Map<GetOperation, PathNode> mySourceNodes = new IdentityHashMap<>();
+    private boolean myRenamed;
+
+    public SourcePathsUpdater(Collection<? extends GetOperation> operations) {
+      for (GetOperation operation : operations) {
+        if (operation.getSlocal() != null) {
+          String[] components = getPathComponents(operation.getSlocal());
+          mySourceNodes.put(operation, myRoot.getOrCreateDescendant(components, components.length));
+        }
       }
     }
+
+    /**
+     * @return current location of the operation's source path with respect to folder renames performed so far
+     */
+    @Nullable
+    public String getSourcePath(@NotNull GetOperation operation) {
+      PathNode node = mySourceNodes.get(operation);
+      return node != null && myRenamed ? node.getPath() : operation.getSlocal();
+    }
+
+    /**
+     * Sets the operation source path to its current location
+     */
+    public void updateSourcePath(@NotNull GetOperation operation) {
+      if (myRenamed && mySourceNodes.containsKey(operation)) {
+        operation.setSlocal(getSourcePath(operation));
+      }
+    }
+
+    /**
+     * Should be called after a folder was moved from the operation's source path to its target path
+     */
+    public void folderRenamed(@NotNull GetOperation operation) {
+      PathNode node = mySourceNodes.get(operation);
+      TFSVcs.assertTrue(node != null && operation.getTlocal() != null);
+      //noinspection ConstantConditions
+      String[] targetComponents = getPathComponents(operation.getTlocal());
+      PathNode newParent = myRoot.getOrCreateDescendant(targetComponents, targetComponents.length - 1);
+      node.moveTo(newParent, targetComponents[targetComponents.length - 1]);
+      myRenamed = true;
+    }
   }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs.workitems;
+
+import java.util.Arrays;
+
+/**
+ * Sorted work item ids kept as ranges the way the server reports them, so that queries returning lots of work items
+ * don't expand them into a list.
+ */
+public class WorkItemIds {
+  public static final WorkItemIds EMPTY = new WorkItemIds(new int[0], new int[0]);
+
+  // inclusive bounds of non overlapping ranges in ascending order
+  private final int[] myStarts;
+  private final int[] myEnds;
+  // myOffsets[i] is the index of myStarts[i] among all the ids
+  private final int[] myOffsets;
+  private final int mySize;
+
+  /**
+   * @param starts first ids of ranges
+   * @param ends   last ids of ranges (inclusive), may overlap and go in any order
+   */
+  public WorkItemIds(int[] starts, int[] ends) {
+    assert starts.length == ends.length;
+    long[] ranges = new long[starts.length];
+    for (int i = 0; i < starts.length; i++) {
+      ranges[i] = ((long)starts[i] << 32) | (ends[i] & 0xffffffffL);
+    }
+    Arrays.sort(ranges);
+
+    int[] mergedStarts = new int[ranges.length];
+    int[] mergedEnds = new int[ranges.length];
+    int count = 0;
+    for (long range : ranges) {
+      int start = (int)(range >> 32);
+      int end = Math.max(start, (int)range);
+      if (count > 0 && start <= mergedEnds[count - 1] + 1) {
+        mergedEnds[count - 1] = Math.max(mergedEnds[count - 1], end);
+      }
+      else {
+        mergedStarts[count] = start;
+        mergedEnds[count] = end;
+        count++;
+      }
+    }
+
+    myStarts = Arrays.copyOf(mergedStarts, count);
+    myEnds = Arrays.copyOf(mergedEnds, count);
+    myOffsets = new int[count];
+    int size = 0;
+    for (int i = 0; i < count; i++) {
+      myOffsets[i] = size;
+      size += myEnds[i] - myStarts[i] + 1;
+    }
+    mySize = size;
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public int get(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException(index + " of " + mySize);
+    }
+    int range = Arrays.binarySearch(myOffsets, index);
+    if (range < 0) {
+      range = -range - 2;
+    }
+    return myStarts[range] + index - myOffsets[range];
+  }
+
+  /**
+   * @return ids with indices from <code>from</code> (inclusive) to <code>to</code> (exclusive)
+   */
+  public int[] toArray(int from, int to) {
+    int[] result = new int[to - from];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = get(from + i);
+    }
+    return result;
+  }
+}
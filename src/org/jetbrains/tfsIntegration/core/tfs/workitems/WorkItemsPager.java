@@ -0,0 +1,76 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs.workitems;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.tfsIntegration.core.tfs.VersionControlServer;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Work items found by a query, loaded from the server page by page on demand.
+ */
+public class WorkItemsPager {
+  public static final int PAGE_SIZE = Integer.getInteger("org.jetbrains.tfsIntegration.workItemsPageSize", 200);
+
+  @NotNull private final VersionControlServer myServer;
+  @NotNull private final WorkItemIds myIds;
+  // guarded by this
+  private int myLoadedCount;
+
+  public WorkItemsPager(@NotNull VersionControlServer server, @NotNull WorkItemIds ids) {
+    this(server, ids, 0);
+  }
+
+  private WorkItemsPager(@NotNull VersionControlServer server, @NotNull WorkItemIds ids, int loadedCount) {
+    myServer = server;
+    myIds = ids;
+    myLoadedCount = loadedCount;
+  }
+
+  /**
+   * @return pager that loads the same work items as this one is yet to load, independently of it
+   */
+  @NotNull
+  public synchronized WorkItemsPager copy() {
+    return new WorkItemsPager(myServer, myIds, myLoadedCount);
+  }
+
+  public int getTotalCount() {
+    return myIds.size();
+  }
+
+  public synchronized boolean hasMore() {
+    return myLoadedCount < myIds.size();
+  }
+
+  /**
+   * @return next {@link #PAGE_SIZE} work items or an empty list if all the work items are loaded already
+   */
+  @NotNull
+  public synchronized List<WorkItem> loadNextPage(Object projectOrComponent, String progressTitle) throws TfsException {
+    if (!hasMore()) {
+      return Collections.emptyList();
+    }
+    int to = Math.min(myLoadedCount + PAGE_SIZE, myIds.size());
+    List<WorkItem> result = myServer.pageWorkItemsByIds(myIds.toArray(myLoadedCount, to), projectOrComponent, progressTitle);
+    myLoadedCount = to;
+    return result;
+  }
+}
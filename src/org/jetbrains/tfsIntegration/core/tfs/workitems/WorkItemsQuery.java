@@ -25,7 +25,7 @@ import java.util.List;
 public enum WorkItemsQuery {
   AllMyActive("All My Active Work Items") {
     @Override
-    public List<WorkItem> queryWorkItems(final ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
+    protected Query_type0E createQuery(final ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
       Expression_type0 expression1 = new Expression_type0();
       expression1.setColumn(WorkItemField.ASSIGNED_TO.getSerialized());
       expression1.setOperator(OperatorType.equals);
@@ -44,12 +44,12 @@ public enum WorkItemsQuery {
       Query_type0E query_type01 = new Query_type0E();
       query_type01.setGroup(groupType);
 
-      return queryWorkItems(server, query_type01, projectOrComponent, progressMessage);
+      return query_type01;
     }},
 
   AllMy("All My Work Items") {
     @Override
-    public List<WorkItem> queryWorkItems(final ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
+    protected Query_type0E createQuery(final ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
       Expression_type0 expression1 = new Expression_type0();
       expression1.setColumn(WorkItemField.ASSIGNED_TO.getSerialized());
       expression1.setOperator(OperatorType.equals);
@@ -59,12 +59,12 @@ public enum WorkItemsQuery {
       Query_type0E query_type01 = new Query_type0E();
       query_type01.setExpression(expression1);
 
-      return queryWorkItems(server, query_type01, projectOrComponent, progressMessage);
+      return query_type01;
     }},
 
   AllActive("All Active Work Items") {
     @Override
-    public List<WorkItem> queryWorkItems(final ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
+    protected Query_type0E createQuery(final ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
       Expression_type0 expression1 = new Expression_type0();
       expression1.setColumn(WorkItemField.STATE.getSerialized());
       expression1.setOperator(OperatorType.equals);
@@ -73,12 +73,12 @@ public enum WorkItemsQuery {
       Query_type0E query_type01 = new Query_type0E();
       query_type01.setExpression(expression1);
 
-      return queryWorkItems(server, query_type01, projectOrComponent, progressMessage);
+      return query_type01;
     }},
 
   All("All Work Items") {
     @Override
-    public List<WorkItem> queryWorkItems(ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
+    protected Query_type0E createQuery(ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
       Expression_type0 expression1 = new Expression_type0();
       expression1.setColumn(WorkItemField.ID.getSerialized());
       expression1.setOperator(OperatorType.equalsGreater);
@@ -87,7 +87,7 @@ public enum WorkItemsQuery {
       Query_type0E query_type01 = new Query_type0E();
       query_type01.setExpression(expression1);
 
-      return queryWorkItems(server, query_type01, projectOrComponent, progressMessage);
+      return query_type01;
     }};
 
   private final String myName;
@@ -100,12 +100,17 @@ public enum WorkItemsQuery {
     return myName;
   }
 
-  public abstract List<WorkItem> queryWorkItems(ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException;
+  protected abstract Query_type0E createQuery(ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException;
 
-  protected static List<WorkItem> queryWorkItems(ServerInfo server,
-                                                 Query_type0E query_type01,
-                                                 Object projectOrComponent,
-                                                 String progressMessage) throws TfsException {
-    return server.getVCS().queryWorkItems(query_type01, projectOrComponent, progressMessage);
+  public List<WorkItem> queryWorkItems(ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
+    return server.getVCS().queryWorkItems(createQuery(server, projectOrComponent, progressMessage), projectOrComponent, progressMessage);
+  }
+
+  /**
+   * Runs the query but doesn't load work items found, they are loaded by the pager.
+   */
+  public WorkItemsPager createPager(ServerInfo server, Object projectOrComponent, String progressMessage) throws TfsException {
+    Query_type0E query = createQuery(server, projectOrComponent, progressMessage);
+    return new WorkItemsPager(server.getVCS(), server.getVCS().queryWorkItemIds(query, projectOrComponent, progressMessage));
   }
 }
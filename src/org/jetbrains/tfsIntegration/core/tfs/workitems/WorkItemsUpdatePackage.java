@@ -0,0 +1,74 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs.workitems;
+
+import com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.Package_type0;
+import com.microsoft.schemas.teamfoundation._2005._06.workitemtracking.clientservices._03.UpdateWorkItem_type0;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axis2.databinding.ADBException;
+import org.apache.axis2.databinding.utils.BeanUtil;
+import org.apache.axis2.databinding.utils.writer.MTOMAwareXMLStreamWriter;
+import org.jetbrains.annotations.NonNls;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import java.util.List;
+
+/**
+ * Update package with several <code>UpdateWorkItem</code> elements. The generated bean can hold only one of them while the server
+ * accepts any number.
+ */
+public class WorkItemsUpdatePackage extends Package_type0 {
+  @NonNls private static final String NAMESPACE = "http://schemas.microsoft.com/TeamFoundation/2005/06/WorkItemTracking/ClientServices/03";
+  @NonNls private static final String UPDATE_WORK_ITEM = "UpdateWorkItem";
+
+  private final List<UpdateWorkItem_type0> myUpdates;
+
+  public WorkItemsUpdatePackage(List<UpdateWorkItem_type0> updates) {
+    myUpdates = updates;
+  }
+
+  @Override
+  public void serialize(QName parentQName, OMFactory factory, MTOMAwareXMLStreamWriter xmlWriter, boolean serializeType)
+    throws XMLStreamException, ADBException {
+    String namespace = parentQName.getNamespaceURI();
+    if (namespace != null && namespace.trim().length() > 0) {
+      if (xmlWriter.getPrefix(namespace) != null) {
+        xmlWriter.writeStartElement(namespace, parentQName.getLocalPart());
+      }
+      else {
+        String prefix = parentQName.getPrefix();
+        if (prefix == null || prefix.length() == 0) {
+          prefix = BeanUtil.getUniquePrefix();
+        }
+        xmlWriter.writeStartElement(prefix, parentQName.getLocalPart(), namespace);
+        xmlWriter.writeNamespace(prefix, namespace);
+        xmlWriter.setPrefix(prefix, namespace);
+      }
+    }
+    else {
+      xmlWriter.writeStartElement(parentQName.getLocalPart());
+    }
+
+    // same as the generated bean does for an empty xmlns
+    xmlWriter.writeAttribute("xmlns", "");
+    for (UpdateWorkItem_type0 update : myUpdates) {
+      update.serialize(new QName(NAMESPACE, UPDATE_WORK_ITEM), factory, xmlWriter);
+    }
+    xmlWriter.writeEndElement();
+  }
+}
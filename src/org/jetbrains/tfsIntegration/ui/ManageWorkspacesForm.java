@@ -230,6 +230,7 @@ public class ManageWorkspacesForm {
   private void reloadWorkspaces(ServerInfo server) {
     try {
       Object selection = getSelectedObject();
+      server.getVCS().invalidateIdentities();
       server.refreshWorkspacesForCurrentOwnerAndComputer(myContentPane, true);
       updateControls(selection);
     }
@@ -331,6 +332,7 @@ public class ManageWorkspacesForm {
       new ServerInfo(result.uri, result.instanceId, result.workspaces, result.authorizedCredentials.getQualifiedUsername(),
                      result.beans);
     Workstation.getInstance().addServer(newServer);
+    newServer.prefetchIdentity(myContentPane);
     List<WorkspaceInfo> workspaces = newServer.getWorkspacesForCurrentOwnerAndComputer();
     updateControls(workspaces.isEmpty() ? newServer : workspaces.iterator().next());
   }
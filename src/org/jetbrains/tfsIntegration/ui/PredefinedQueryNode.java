@@ -7,6 +7,7 @@ import com.intellij.ui.treeStructure.SimpleNode;
 import com.intellij.ui.treeStructure.SimpleTree;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsPager;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsQuery;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
@@ -50,7 +51,8 @@ public class PredefinedQueryNode extends BaseQueryNode {
       @NotNull
       @Override
       public WorkItemsQueryResult run() throws TfsException, VcsException {
-        return new WorkItemsQueryResult(myQuery.queryWorkItems(getServer(), tree, null));
+        WorkItemsPager pager = myQuery.createPager(getServer(), tree, null);
+        return new WorkItemsQueryResult(pager.loadNextPage(tree, null), pager);
       }
     });
   }
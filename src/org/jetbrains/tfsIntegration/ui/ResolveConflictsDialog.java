@@ -34,6 +34,13 @@ public class ResolveConflictsDialog extends DialogWrapper {
     setResizable(true);
     setOKButtonText("Close");
     init();
+    myResolveConflictHelper.startPrefetch();
+  }
+
+  @Override
+  protected void dispose() {
+    myResolveConflictHelper.stopPrefetch();
+    super.dispose();
   }
 
   @Override
@@ -2,6 +2,9 @@ package org.jetbrains.tfsIntegration.ui;
 
 import com.intellij.ide.util.treeView.AbstractTreeStructure;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.ui.TreeTableSpeedSearch;
@@ -17,20 +20,32 @@ import org.jetbrains.tfsIntegration.checkin.CheckinParameters;
 import org.jetbrains.tfsIntegration.core.tfs.ServerInfo;
 import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
 import org.jetbrains.tfsIntegration.core.tfs.WorkItemsCheckinParameters;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsPager;
+import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
 import javax.swing.*;
 import javax.swing.event.TableModelEvent;
+import java.awt.*;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Konstantin Kolosovsky.
  */
 public class WorkItemsPanel implements Disposable {
 
+  private static final Logger LOG = Logger.getInstance(WorkItemsPanel.class);
+
+  // next page of work items is loaded when fewer rows are left below the visible ones
+  private static final int PREFETCH_ROWS = 20;
+
   @SuppressWarnings("unused") private JPanel myMainPanel;
   private TreeTableView myWorkItemsTable;
   private SimpleTree myWorkItemQueriesTree;
   private WorkItemQueriesTreeBuilder myTreeBuilder;
   private WorkItemsTableModel myWorkItemsTableModel;
+  private boolean myPageLoading; // accessed in EDT
 
   private final CheckinParametersForm myForm;
 
@@ -45,6 +60,11 @@ public class WorkItemsPanel implements Disposable {
     new TreeTableSpeedSearch(myWorkItemsTable);
 
     setupWorkItemQueries();
+
+    JScrollPane scrollPane = UIUtil.getParentOfType(JScrollPane.class, myWorkItemsTable);
+    if (scrollPane != null) {
+      scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> loadNextPageIfNeeded());
+    }
   }
 
   private void setupWorkItemQueries() {
@@ -69,6 +89,41 @@ public class WorkItemsPanel implements Disposable {
   private void updateWorkItemsTable() {
     myWorkItemsTableModel.setContent(getState().getWorkItems(myForm.getSelectedServer()));
     TreeUtil.expandAll(myWorkItemsTable.getTree());
+    loadNextPageIfNeeded();
+  }
+
+  private void loadNextPageIfNeeded() {
+    final WorkItemsPager pager = myWorkItemsTableModel.getPager();
+    if (myPageLoading || pager == null || !pager.hasMore()) {
+      return;
+    }
+    Rectangle visibleRect = myWorkItemsTable.getVisibleRect();
+    int lastVisibleRow = myWorkItemsTable.rowAtPoint(new Point(0, visibleRect.y + visibleRect.height - 1));
+    if (lastVisibleRow != -1 && lastVisibleRow < myWorkItemsTable.getRowCount() - PREFETCH_ROWS) {
+      return;
+    }
+
+    myPageLoading = true;
+    final ModalityState modalityState = ModalityState.stateForComponent(myWorkItemsTable);
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      List<WorkItem> workItems;
+      try {
+        workItems = pager.loadNextPage(getProject(), null);
+      }
+      catch (TfsException e) {
+        LOG.info(e);
+        workItems = Collections.emptyList();
+      }
+      final List<WorkItem> page = workItems;
+      ApplicationManager.getApplication().invokeLater(() -> {
+        myPageLoading = false;
+        // another query could be run meanwhile
+        if (myWorkItemsTableModel.getPager() == pager && !page.isEmpty()) {
+          myWorkItemsTableModel.appendWorkItems(page);
+          loadNextPageIfNeeded();
+        }
+      }, modalityState);
+    });
   }
 
   public void update() {
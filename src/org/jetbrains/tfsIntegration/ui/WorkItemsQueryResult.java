@@ -4,6 +4,7 @@ import com.microsoft.tfs.core.clients.workitem.query.WorkItemLinkInfo;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsPager;
 
 import java.util.List;
 
@@ -11,14 +12,27 @@ public class WorkItemsQueryResult {
 
   @NotNull private final List<WorkItem> myWorkItems;
   @Nullable private final List<WorkItemLinkInfo> myLinks;
+  @Nullable private final WorkItemsPager myPager;
 
   public WorkItemsQueryResult(@NotNull List<WorkItem> workItems) {
     this(workItems, null);
   }
 
   public WorkItemsQueryResult(@NotNull List<WorkItem> items, @Nullable List<WorkItemLinkInfo> links) {
+    this(items, links, null);
+  }
+
+  /**
+   * @param firstPage work items loaded already, others are loaded with the pager
+   */
+  public WorkItemsQueryResult(@NotNull List<WorkItem> firstPage, @NotNull WorkItemsPager pager) {
+    this(firstPage, null, pager);
+  }
+
+  private WorkItemsQueryResult(@NotNull List<WorkItem> items, @Nullable List<WorkItemLinkInfo> links, @Nullable WorkItemsPager pager) {
     myWorkItems = items;
     myLinks = links;
+    myPager = pager;
   }
 
   @NotNull
@@ -30,4 +44,9 @@ public class WorkItemsQueryResult {
   public List<WorkItemLinkInfo> getLinks() {
     return myLinks;
   }
+
+  @Nullable
+  public WorkItemsPager getPager() {
+    return myPager;
+  }
 }
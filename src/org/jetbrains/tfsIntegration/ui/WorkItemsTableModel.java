@@ -33,6 +33,7 @@ import org.jetbrains.tfsIntegration.core.tfs.WorkItemsCheckinParameters;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItem;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemState;
 import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemType;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemsPager;
 
 import javax.swing.*;
 import javax.swing.table.TableCellEditor;
@@ -72,6 +73,24 @@ class WorkItemsTableModel extends ListTreeTableModelOnColumns {
     reload(myRoot);
   }
 
+  /**
+   * Appends the next page of work items of a flat query result.
+   */
+  public void appendWorkItems(@NotNull List<WorkItem> workItems) {
+    int[] indices = new int[workItems.size()];
+    for (int i = 0; i < workItems.size(); i++) {
+      indices[i] = myRoot.getChildCount();
+      myRoot.add(new DefaultMutableTreeNode(workItems.get(i)));
+    }
+    myContent.addWorkItems(workItems);
+    nodesWereInserted(myRoot, indices);
+  }
+
+  @Nullable
+  public WorkItemsPager getPager() {
+    return myContent.getPager();
+  }
+
   private void buildModel() {
     List<WorkItemLinkInfo> links = myContent.getLinks();
 
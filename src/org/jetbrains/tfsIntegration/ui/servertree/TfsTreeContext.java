@@ -1,15 +1,29 @@
 package org.jetbrains.tfsIntegration.ui.servertree;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Condition;
 import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.Item;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.ItemType;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.tfsIntegration.core.TFSBundle;
 import org.jetbrains.tfsIntegration.core.tfs.ServerInfo;
+import org.jetbrains.tfsIntegration.core.tfs.VersionControlServer;
 import org.jetbrains.tfsIntegration.exceptions.TfsException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Children of server items are taken from the cache of the server shared by all the server trees. Once children of a folder
+ * are shown, children of its subfolders are queried in background with a single request. Children are loaded on the event
+ * dispatch thread, so a folder expanded before its prefetch completes is queried in foreground rather than waiting for it.
+ */
 public class TfsTreeContext {
+  private static final Logger LOG = Logger.getInstance(TfsTreeContext.class.getName());
 
   public final ServerInfo myServer;
 
@@ -17,6 +31,8 @@ public class TfsTreeContext {
   private final Object myProjectOrComponent;
   @Nullable
   private final Condition<? super String> myFilter;
+  // folders queried by prefetch requests in progress
+  private final Set<String> myPrefetching = ConcurrentHashMap.newKeySet();
 
   public TfsTreeContext(ServerInfo server, boolean foldersOnly, Object projectOrComponent, Condition<? super String> filter) {
     myServer = server;
@@ -30,6 +46,40 @@ public class TfsTreeContext {
   }
 
   public List<Item> getChildItems(String path) throws TfsException {
-    return myServer.getVCS().getChildItems(path, myFoldersOnly, myProjectOrComponent, TFSBundle.message("loading.items"));
+    final VersionControlServer vcs = myServer.getVCS();
+    vcs.validateCachedChildItems(myProjectOrComponent);
+
+    List<Item> children = vcs.getCachedChildItems(path, myFoldersOnly);
+    if (children == null) {
+      children = vcs.getChildItems(path, myFoldersOnly, myProjectOrComponent, TFSBundle.message("loading.items"));
+    }
+    prefetchChildItems(vcs, children);
+    return children;
+  }
+
+  private void prefetchChildItems(final VersionControlServer vcs, List<Item> items) {
+    final Collection<String> folders = new ArrayList<>();
+    for (Item item : items) {
+      if (item.getType() == ItemType.Folder && vcs.getCachedChildItems(item.getItem(), myFoldersOnly) == null &&
+          !myPrefetching.contains(item.getItem())) {
+        folders.add(item.getItem());
+      }
+    }
+    if (folders.isEmpty()) {
+      return;
+    }
+
+    myPrefetching.addAll(folders);
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        vcs.getChildItems(folders, myFoldersOnly, myProjectOrComponent, null);
+      }
+      catch (TfsException e) {
+        LOG.debug(e);
+      }
+      finally {
+        myPrefetching.removeAll(folders);
+      }
+    });
   }
 }
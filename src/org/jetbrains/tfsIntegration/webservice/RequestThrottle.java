@@ -0,0 +1,152 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.webservice;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.tfs.TfsExecutionUtil;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of requests executed against a single server simultaneously and collects queue statistics
+ */
+public class RequestThrottle {
+
+  public static class Statistics {
+    public final int maxInFlight;
+    public final int inFlight;
+    public final int queueDepth;
+    public final int maxQueueDepth;
+    public final long requestCount;
+    public final long totalWaitMillis;
+    public final long maxWaitMillis;
+
+    private Statistics(int maxInFlight,
+                       int inFlight,
+                       int queueDepth,
+                       int maxQueueDepth,
+                       long requestCount,
+                       long totalWaitMillis,
+                       long maxWaitMillis) {
+      this.maxInFlight = maxInFlight;
+      this.inFlight = inFlight;
+      this.queueDepth = queueDepth;
+      this.maxQueueDepth = maxQueueDepth;
+      this.requestCount = requestCount;
+      this.totalWaitMillis = totalWaitMillis;
+      this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public long getAverageWaitMillis() {
+      return requestCount > 0 ? totalWaitMillis / requestCount : 0;
+    }
+
+    @Override
+    public String toString() {
+      return "in flight: " + inFlight + "/" + maxInFlight +
+             ", queued: " + queueDepth + " (max " + maxQueueDepth + ")" +
+             ", requests: " + requestCount +
+             ", wait avg/max: " + getAverageWaitMillis() + "/" + maxWaitMillis + " ms";
+    }
+  }
+
+  private final int myMaxInFlight;
+  private final Semaphore myPermits;
+
+  // nested requests made by a thread that already holds a slot don't take another one, like it was with reentrant lock
+  private final ThreadLocal<int[]> myHoldCount = ThreadLocal.withInitial(() -> new int[1]);
+
+  private final AtomicInteger myQueueDepth = new AtomicInteger();
+  private final AtomicInteger myMaxQueueDepth = new AtomicInteger();
+  private final AtomicLong myRequestCount = new AtomicLong();
+  private final AtomicLong myTotalWaitNanos = new AtomicLong();
+  private final AtomicLong myMaxWaitNanos = new AtomicLong();
+
+  RequestThrottle(int maxInFlight) {
+    myMaxInFlight = Math.max(1, maxInFlight);
+    myPermits = new Semaphore(myMaxInFlight, true);
+  }
+
+  /**
+   * Blocks until a request slot is available
+   *
+   * @return time spent waiting, in milliseconds
+   * @throws ProcessCanceledException if the progress was cancelled while waiting
+   */
+  long acquire(@Nullable ProgressIndicator pi) {
+    int[] holdCount = myHoldCount.get();
+    if (holdCount[0] > 0) {
+      holdCount[0]++;
+      return 0;
+    }
+
+    long start = System.nanoTime();
+    int depth = myQueueDepth.incrementAndGet();
+    updateMax(myMaxQueueDepth, depth);
+    try {
+      TfsExecutionUtil.waitFor((timeout, unit) -> myPermits.tryAcquire(timeout, unit) ? Boolean.TRUE : null, () -> {
+        if (pi != null) {
+          pi.checkCanceled();
+        }
+        else {
+          ProgressManager.checkCanceled();
+        }
+      });
+    }
+    finally {
+      myQueueDepth.decrementAndGet();
+    }
+
+    holdCount[0] = 1;
+    long waitNanos = System.nanoTime() - start;
+    myRequestCount.incrementAndGet();
+    myTotalWaitNanos.addAndGet(waitNanos);
+    updateMax(myMaxWaitNanos, waitNanos);
+    return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+  }
+
+  void release() {
+    int[] holdCount = myHoldCount.get();
+    if (--holdCount[0] == 0) {
+      myPermits.release();
+    }
+  }
+
+  @NotNull
+  Statistics getStatistics() {
+    return new Statistics(myMaxInFlight, myMaxInFlight - myPermits.availablePermits(), myQueueDepth.get(), myMaxQueueDepth.get(),
+                          myRequestCount.get(), TimeUnit.NANOSECONDS.toMillis(myTotalWaitNanos.get()),
+                          TimeUnit.NANOSECONDS.toMillis(myMaxWaitNanos.get()));
+  }
+
+  private static void updateMax(AtomicInteger max, int value) {
+    int current;
+    while (value > (current = max.get()) && !max.compareAndSet(current, value)) ;
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long current;
+    while (value > (current = max.get()) && !max.compareAndSet(current, value)) ;
+  }
+}
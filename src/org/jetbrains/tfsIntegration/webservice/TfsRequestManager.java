@@ -2,6 +2,7 @@ package org.jetbrains.tfsIntegration.webservice;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
@@ -46,6 +47,14 @@ public class TfsRequestManager {
     public boolean retrieveAuthorizedCredentials() {
       return true;
     }
+
+    /**
+     * @return true if the request uploads or downloads file content. If parallel transfers are enabled, such requests are not
+     * counted against the concurrent requests limit, their parallelism is bounded by the caller and by the transfer connection pool
+     */
+    public boolean isContentTransfer() {
+      return false;
+    }
   }
 
   private static final Map<URI, TfsRequestManager> ourInstances = new HashMap<>();
@@ -57,10 +66,24 @@ public class TfsRequestManager {
   // shared lock to avoid showing login dialog for several servers at the same time
   private static final ReentrantLock ourShowDialogLock = new ReentrantLock();
 
-  // Don't make several requests to the same server simultaneously.
+  // Number of requests allowed to run against the same server simultaneously, 1 means requests are serialized.
+  // Credentials retrieval and login dialog are serialized by ourShowDialogLock regardless of this setting
+  private static final int MAX_CONCURRENT_REQUESTS = Integer.getInteger("org.jetbrains.tfsIntegration.maxConcurrentRequests", 1);
+
+  // report requests that waited for a free slot longer than this
+  private static final long SLOW_WAIT_THRESHOLD_MS = 1000;
+
+  // Don't make more than MAX_CONCURRENT_REQUESTS requests to the same server simultaneously.
   // Indeed, this way we don't protect from simultaneous request to the existing server when trying to add it as a new one
   // (finally and getting 'duplicate server' error), but I believe it won't hurt
-  private final ReentrantLock myRequestLock = new ReentrantLock();
+  private final RequestThrottle myRequestThrottle = new RequestThrottle(MAX_CONCURRENT_REQUESTS);
+
+  /**
+   * @return number of requests that may run at once against the given number of servers
+   */
+  public static int getParallelism(int serversCount) {
+    return MAX_CONCURRENT_REQUESTS * serversCount;
+  }
 
   private TfsRequestManager(@Nullable URI serverUri) {
     myServerUri = serverUri;
@@ -75,6 +98,35 @@ public class TfsRequestManager {
     return result;
   }
 
+  /**
+   * @return request queue statistics for every server requests were made to
+   */
+  @NotNull
+  public static synchronized Map<URI, RequestThrottle.Statistics> getStatistics() {
+    Map<URI, RequestThrottle.Statistics> result = new HashMap<>();
+    for (Map.Entry<URI, TfsRequestManager> entry : ourInstances.entrySet()) {
+      if (entry.getKey() != null) {
+        result.put(entry.getKey(), entry.getValue().myRequestThrottle.getStatistics());
+      }
+    }
+    return result;
+  }
+
+  private static boolean isThrottled(Request<?> request) {
+    // sequential transfers are throttled like any other request
+    return !request.isContentTransfer() || WebServiceHelper.PARALLEL_TRANSFERS <= 1;
+  }
+
+  private void acquireRequestSlot(@Nullable ProgressIndicator pi, @Nullable URI serverUri) {
+    long waitMillis = myRequestThrottle.acquire(pi);
+    if (waitMillis > SLOW_WAIT_THRESHOLD_MS) {
+      LOG.info("Request to " + serverUri + " waited " + waitMillis + " ms in queue; " + myRequestThrottle.getStatistics());
+    }
+    else if (LOG.isDebugEnabled()) {
+      LOG.debug("Request to " + serverUri + " waited " + waitMillis + " ms in queue; " + myRequestThrottle.getStatistics());
+    }
+  }
+
   /**
    * @param request
    * @param <T>
@@ -150,10 +202,13 @@ public class TfsRequestManager {
         }
       }
       LOG.assertTrue(!credentials.isNull());
+      ProgressIndicator pi = ProgressManager.getInstance().getProgressIndicator();
+      boolean throttled = isThrottled(request);
+      if (throttled) {
+        acquireRequestSlot(pi, myServerUri);
+      }
       try {
-        myRequestLock.lock();
         ProgressManager.checkCanceled();
-        ProgressIndicator pi = ProgressManager.getInstance().getProgressIndicator();
         T result = executeRequestImpl(myServerUri, credentials, request, pi);
         TFSConfigurationManager.getInstance().storeCredentials(myServerUri, credentials.get());
         return result;
@@ -171,7 +226,9 @@ public class TfsRequestManager {
         throw tfsException;
       }
       finally {
-        myRequestLock.unlock();
+        if (throttled) {
+          myRequestThrottle.release();
+        }
       }
     }
   }
@@ -211,9 +268,18 @@ public class TfsRequestManager {
       pi.setIndeterminate(true);
       done.down();
 
+      boolean throttled = isThrottled(myRequest);
       ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        if (throttled) {
+          try {
+            acquireRequestSlot(pi, myCurrentServerUri);
+          }
+          catch (ProcessCanceledException e) {
+            done.up();
+            return;
+          }
+        }
         try {
-          myRequestLock.lock();
           myResult = executeRequestImpl(myCurrentServerUri, myCredentials, myRequest, pi);
         }
         catch (Exception e) {
@@ -221,7 +287,9 @@ public class TfsRequestManager {
           myError = TfsExceptionManager.processException(e);
         }
         finally {
-          myRequestLock.unlock();
+          if (throttled) {
+            myRequestThrottle.release();
+          }
           done.up();
         }
       });
@@ -20,9 +20,11 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.ClassLoaderUtil;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.StreamUtil;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.DigestUtil;
 import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axis2.Constants;
 import org.apache.axis2.client.Options;
@@ -54,11 +56,11 @@ import org.jetbrains.tfsIntegration.webservice.auth.NativeNTLM2Scheme;
 import org.jetbrains.tfsIntegration.webservice.compatibility.CustomSOAP12Factory;
 import org.jetbrains.tfsIntegration.webservice.compatibility.CustomSOAPBuilder;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.*;
 import java.net.URI;
 import java.rmi.RemoteException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -76,6 +78,9 @@ public class WebServiceHelper {
 
   private static final int SOCKET_TIMEOUT = Integer.getInteger("org.jetbrains.tfsIntegration.socketTimeout", 30000);
 
+  // number of files uploaded or downloaded simultaneously, 1 means one after another
+  public static final int PARALLEL_TRANSFERS = Math.max(1, Integer.getInteger("org.jetbrains.tfsIntegration.parallelTransfers", 1));
+
   static {
     // keep NTLM scheme first
     AuthPolicy.unregisterAuthScheme(AuthPolicy.NTLM);
@@ -102,12 +107,47 @@ public class WebServiceHelper {
   }
 
 
+  private interface ResponseReader<T> {
+    T read(InputStream responseStream) throws IOException;
+  }
+
   public static void httpGet(final URI serverUri,
                              final String downloadUrl,
                              final OutputStream outputStream,
                              Credentials credentials,
                              final HttpClient httpClient)
     throws TfsException, IOException {
+    httpGet(serverUri, downloadUrl, credentials, httpClient, responseStream -> {
+      StreamUtil.copyStreamContent(responseStream, outputStream);
+      return null;
+    });
+  }
+
+  /**
+   * Writes the response into the file, the file is truncated first
+   *
+   * @return MD5 of the written content if requested
+   */
+  @Nullable
+  public static byte[] httpGet(final URI serverUri,
+                               final String downloadUrl,
+                               final File target,
+                               final boolean calculateMD5,
+                               Credentials credentials,
+                               final HttpClient httpClient)
+    throws TfsException, IOException {
+    return httpGet(serverUri, downloadUrl, credentials, httpClient, responseStream -> {
+      MessageDigest digest = calculateMD5 ? DigestUtil.md5() : null;
+      OutputStream fileStream = new FileOutputStream(target);
+      try (OutputStream outputStream = digest != null ? new DigestOutputStream(fileStream, digest) : fileStream) {
+        FileUtil.copy(responseStream, outputStream);
+      }
+      return digest != null ? digest.digest() : null;
+    });
+  }
+
+  private static <T> T httpGet(URI serverUri, String downloadUrl, Credentials credentials, HttpClient httpClient, ResponseReader<T> reader)
+    throws TfsException, IOException {
     TFSVcs.assertTrue(downloadUrl != null);
     setupHttpClient(credentials, serverUri, httpClient);
 
@@ -115,7 +155,7 @@ public class WebServiceHelper {
     try {
       int statusCode = httpClient.executeMethod(method);
       if (statusCode == HttpStatus.SC_OK) {
-        StreamUtil.copyStreamContent(getInputStream(method), outputStream);
+        return reader.read(getInputStream(method));
       }
       else if (statusCode == HttpStatus.SC_INTERNAL_SERVER_ERROR) {
         throw new OperationFailedException(method.getResponseBodyAsString());
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.core.tfs;
+
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import junit.framework.TestCase;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// in the package of MappingIndex since the index is not public
+public class MappingIndexTest extends TestCase {
+
+  private WorkspaceInfo myWorkspace1;
+  private WorkspaceInfo myWorkspace2;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    ServerInfo server = new ServerInfo(new URI("http://tfs:8080"), "guid", null);
+    myWorkspace1 = new WorkspaceInfo(server, "owner", "computer");
+    myWorkspace2 = new WorkspaceInfo(server, "owner", "computer");
+  }
+
+  private static FilePath path(String path) {
+    return new LocalFilePath(path, true);
+  }
+
+  private static WorkingFolderInfo map(WorkspaceInfo workspace, String localPath, String serverPath) {
+    return addWorkingFolder(workspace, WorkingFolderInfo.Status.Active, localPath, serverPath);
+  }
+
+  private static WorkingFolderInfo cloak(WorkspaceInfo workspace, String localPath, String serverPath) {
+    return addWorkingFolder(workspace, WorkingFolderInfo.Status.Cloaked, localPath, serverPath);
+  }
+
+  private static WorkingFolderInfo addWorkingFolder(WorkspaceInfo workspace,
+                                                    WorkingFolderInfo.Status status,
+                                                    String localPath,
+                                                    String serverPath) {
+    WorkingFolderInfo workingFolder = new WorkingFolderInfo(status, path(localPath), serverPath);
+    workspace.addWorkingFolderInfo(workingFolder);
+    return workingFolder;
+  }
+
+  private MappingIndex createIndex() {
+    return new MappingIndex(Arrays.asList(myWorkspace1, myWorkspace2), WorkspaceInfo.getMappingsModificationCount());
+  }
+
+  public void testNestedMappings() {
+    WorkingFolderInfo outer = map(myWorkspace1, "/work", "$/project");
+    WorkingFolderInfo inner = map(myWorkspace1, "/work/lib", "$/shared/lib");
+    MappingIndex index = createIndex();
+
+    List<MappingIndex.WorkspaceMappings> found = index.find(path("/work/lib/src/A.java"), false);
+    assertEquals(1, found.size());
+    MappingIndex.WorkspaceMappings mappings = found.get(0);
+    assertSame(myWorkspace1, mappings.workspace);
+    assertEquals(Arrays.asList(outer, inner), mappings.parentMappings);
+    assertEquals("$/shared/lib/src/A.java", mappings.getServerPath(path("/work/lib/src/A.java")));
+
+    found = index.find(path("/work/src/B.java"), false);
+    assertEquals(1, found.size());
+    assertEquals(Collections.singletonList(outer), found.get(0).parentMappings);
+    assertEquals("$/project/src/B.java", found.get(0).getServerPath(path("/work/src/B.java")));
+  }
+
+  public void testCloakUnderMapping() {
+    WorkingFolderInfo mapping = map(myWorkspace1, "/work", "$/project");
+    WorkingFolderInfo cloak = cloak(myWorkspace1, "/work/bin", "$/project/bin");
+    MappingIndex index = createIndex();
+
+    List<MappingIndex.WorkspaceMappings> found = index.find(path("/work/bin/out.jar"), false);
+    assertEquals(1, found.size());
+    // the cloak is the nearest working folder
+    assertEquals(Arrays.asList(mapping, cloak), found.get(0).parentMappings);
+    assertEquals(WorkingFolderInfo.Status.Cloaked, found.get(0).parentMappings.get(1).getStatus());
+
+    found = index.find(path("/work"), true);
+    assertEquals(1, found.size());
+    assertEquals(Collections.singletonList(mapping), found.get(0).parentMappings);
+    assertEquals(Collections.singletonList(cloak), found.get(0).childMappings);
+  }
+
+  public void testChildMappingsOfSeveralWorkspaces() {
+    WorkingFolderInfo mapping1 = map(myWorkspace1, "/work/a", "$/a");
+    WorkingFolderInfo mapping2 = map(myWorkspace2, "/work/b/c", "$/c");
+    MappingIndex index = createIndex();
+
+    assertTrue(index.find(path("/work"), false).isEmpty());
+
+    List<MappingIndex.WorkspaceMappings> found = index.find(path("/work"), true);
+    assertEquals(2, found.size());
+    assertSame(myWorkspace1, found.get(0).workspace);
+    assertTrue(found.get(0).parentMappings.isEmpty());
+    assertEquals(Collections.singletonList(mapping1), found.get(0).childMappings);
+    assertNull(found.get(0).getServerPath(path("/work")));
+    assertSame(myWorkspace2, found.get(1).workspace);
+    assertEquals(Collections.singletonList(mapping2), found.get(1).childMappings);
+  }
+
+  public void testNotMapped() {
+    map(myWorkspace1, "/work", "$/project");
+    MappingIndex index = createIndex();
+
+    assertTrue(index.find(path("/other/file.txt"), true).isEmpty());
+    // sibling with a common prefix is not under the mapping
+    assertTrue(index.find(path("/workspace/file.txt"), false).isEmpty());
+  }
+
+  public void testOutdatedAfterMappingsChange() {
+    map(myWorkspace1, "/work", "$/project");
+    MappingIndex index = createIndex();
+    assertTrue(index.isUpToDate(Arrays.asList(myWorkspace1, myWorkspace2), WorkspaceInfo.getMappingsModificationCount()));
+
+    map(myWorkspace2, "/other", "$/other");
+    assertFalse(index.isUpToDate(Arrays.asList(myWorkspace1, myWorkspace2), WorkspaceInfo.getMappingsModificationCount()));
+
+    index = createIndex();
+    assertFalse(index.isUpToDate(Collections.singletonList(myWorkspace1), WorkspaceInfo.getMappingsModificationCount()));
+  }
+}
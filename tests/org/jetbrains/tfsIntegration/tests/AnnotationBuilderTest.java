@@ -0,0 +1,108 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.history.VcsFileRevision;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.tfsIntegration.core.TFSFileRevision;
+import org.jetbrains.tfsIntegration.core.tfs.AnnotationBuilder;
+
+import java.util.*;
+
+@SuppressWarnings({"HardCodedStringLiteral"})
+public class AnnotationBuilderTest extends TestCase {
+
+  private static final String[] CONTENTS = {"a\nb\nc\n", "a\nx\nb\nc\n", "a\nx\nc\ny\n", "z\na\nx\nc\ny\n"};
+
+  private static class MapCache implements AnnotationBuilder.AnnotationCache {
+    private final Map<Integer, int[]> myLineChangesets = new HashMap<>();
+
+    @Nullable
+    @Override
+    public int[] getLineChangesets(TFSFileRevision revision) {
+      return myLineChangesets.get(revision.getRevisionNumber().getValue());
+    }
+
+    @Override
+    public void putLineChangesets(TFSFileRevision revision, int[] lineChangesets) {
+      myLineChangesets.put(revision.getRevisionNumber().getValue(), lineChangesets);
+    }
+  }
+
+  // newest first, changeset i + 1 has content CONTENTS[i]
+  private static List<TFSFileRevision> revisions(int count) {
+    List<TFSFileRevision> result = new ArrayList<>();
+    for (int changeset = count; changeset > 0; changeset--) {
+      result.add(new TFSFileRevision(null, null, 1, new Date(), "", "", changeset));
+    }
+    return result;
+  }
+
+  private static int[] annotate(List<TFSFileRevision> revisions, @Nullable AnnotationBuilder.AnnotationCache cache, final Set<Integer> loaded)
+    throws VcsException {
+    AnnotationBuilder builder = new AnnotationBuilder(revisions, new AnnotationBuilder.ContentProvider() {
+      @Override
+      public String getContent(TFSFileRevision revision) {
+        int changeset = revision.getRevisionNumber().getValue();
+        loaded.add(changeset);
+        return CONTENTS[changeset - 1];
+      }
+    }, cache);
+    VcsFileRevision[] lineRevisions = builder.getLineRevisions();
+    int[] result = new int[lineRevisions.length];
+    for (int i = 0; i < lineRevisions.length; i++) {
+      result[i] = ((TFSFileRevision)lineRevisions[i]).getRevisionNumber().getValue();
+    }
+    return result;
+  }
+
+  public void testFullAnnotation() throws VcsException {
+    int[] lineChangesets = annotate(revisions(4), null, new HashSet<>());
+    assertTrue(Arrays.equals(new int[]{4, 1, 2, 1, 3}, lineChangesets));
+  }
+
+  public void testIncrementalAnnotation() throws VcsException {
+    MapCache cache = new MapCache();
+    annotate(revisions(3), cache, new HashSet<>());
+
+    Set<Integer> loaded = new HashSet<>();
+    int[] lineChangesets = annotate(revisions(4), cache, loaded);
+    assertTrue(Arrays.equals(new int[]{4, 1, 2, 1, 3}, lineChangesets));
+    // older revisions are not needed when the previous one is annotated already
+    assertEquals(new HashSet<>(Arrays.asList(4, 3)), loaded);
+  }
+
+  public void testCachedRevision() throws VcsException {
+    MapCache cache = new MapCache();
+    annotate(revisions(4), cache, new HashSet<>());
+
+    Set<Integer> loaded = new HashSet<>();
+    int[] lineChangesets = annotate(revisions(4), cache, loaded);
+    assertTrue(Arrays.equals(new int[]{4, 1, 2, 1, 3}, lineChangesets));
+    assertEquals(Collections.singleton(4), loaded);
+  }
+
+  public void testMismatchingCacheIgnored() throws VcsException {
+    MapCache cache = new MapCache();
+    cache.myLineChangesets.put(3, new int[]{1});
+
+    int[] lineChangesets = annotate(revisions(4), cache, new HashSet<>());
+    assertTrue(Arrays.equals(new int[]{4, 1, 2, 1, 3}, lineChangesets));
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.GetOperation;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.operations.GetOperationsUtil;
+
+import java.util.*;
+
+public class GetOperationsUtilTest extends TestCase {
+
+  private static GetOperation operation(String source, String target) {
+    GetOperation operation = new GetOperation();
+    operation.setSlocal(source);
+    operation.setTlocal(target);
+    return operation;
+  }
+
+  private static List<String> sources(List<GetOperation> operations) {
+    List<String> result = new ArrayList<>(operations.size());
+    for (GetOperation operation : operations) {
+      result.add(operation.getSlocal());
+    }
+    return result;
+  }
+
+  public void testParentBeforeChild() {
+    GetOperation child = operation("C:\\a\\b", "C:\\a\\b");
+    GetOperation unrelated = operation("C:\\x", "C:\\x");
+    GetOperation parent = operation("C:\\a", "C:\\a");
+
+    List<GetOperation> sorted = GetOperationsUtil.sortGetOperations(Arrays.asList(child, unrelated, parent));
+    assertEquals(Arrays.asList(parent, child, unrelated), sorted);
+  }
+
+  public void testNoSourceGoesLast() {
+    GetOperation add1 = operation(null, "C:\\a\\new1");
+    GetOperation child = operation("C:\\a\\b", null);
+    GetOperation add2 = operation(null, "C:\\new2");
+    GetOperation parent = operation("C:\\a", "C:\\c");
+
+    List<GetOperation> sorted = GetOperationsUtil.sortGetOperations(Arrays.asList(add1, child, add2, parent));
+    assertEquals(Arrays.asList(parent, child, add1, add2), sorted);
+  }
+
+  public void testLocalVersionUpdateGoesLast() {
+    GetOperation updateLocalVersion = operation(null, null);
+    GetOperation file = operation("C:\\a\\x", "C:\\a\\x");
+
+    List<GetOperation> sorted = GetOperationsUtil.sortGetOperations(Arrays.asList(updateLocalVersion, file));
+    assertEquals(Arrays.asList(file, updateLocalVersion), sorted);
+  }
+
+  public void testPrefixIsNotAncestor() {
+    GetOperation sibling = operation("C:\\ab\\x", "C:\\ab\\x");
+    GetOperation folder = operation("C:\\a", "C:\\a");
+
+    List<GetOperation> sorted = GetOperationsUtil.sortGetOperations(Arrays.asList(sibling, folder));
+    assertEquals(Arrays.asList(sibling, folder), sorted);
+  }
+
+  public void testRenameDoesNotAffectSiblingWithSamePrefix() {
+    GetOperation rename = operation("C:\\a", "C:\\aa");
+    GetOperation child = operation("C:\\a\\a\\a", "C:\\aa\\a\\a");
+    GetOperation sibling = operation("C:\\ab\\x", "C:\\ab\\x");
+    List<GetOperation> operations = Arrays.asList(rename, child, sibling);
+
+    GetOperationsUtil.SourcePathsUpdater updater = new GetOperationsUtil.SourcePathsUpdater(operations);
+    updater.updateSourcePath(rename);
+    updater.folderRenamed(rename);
+    updater.updateSourcePath(child);
+    updater.updateSourcePath(sibling);
+
+    assertEquals(Arrays.asList("C:\\a", "C:\\aa\\a\\a", "C:\\ab\\x"), sources(operations));
+  }
+
+  public void testNestedRenames() {
+    GetOperation renameChild = operation("C:\\a\\c", "C:\\a\\f");
+    GetOperation renameParent = operation("C:\\a", "C:\\b");
+    GetOperation file = operation("C:\\a\\c\\x", "C:\\b\\f\\x");
+    GetOperation movedOut = operation("C:\\a\\d", "C:\\d");
+    GetOperation fileInMovedOut = operation("C:\\a\\d\\y", "C:\\d\\y");
+    List<GetOperation> operations = Arrays.asList(renameChild, renameParent, movedOut, file, fileInMovedOut);
+
+    GetOperationsUtil.SourcePathsUpdater updater = new GetOperationsUtil.SourcePathsUpdater(operations);
+    for (GetOperation operation : operations) {
+      updater.updateSourcePath(operation);
+      if (operation != file && operation != fileInMovedOut) {
+        updater.folderRenamed(operation);
+      }
+    }
+
+    assertEquals(Arrays.asList("C:\\a\\c", "C:\\a", "C:\\b\\d", "C:\\b\\f\\x", "C:\\d\\y"), sources(operations));
+  }
+
+  public void testGetSourcePathDoesNotModifyOperation() {
+    GetOperation rename = operation("C:\\a", "C:\\b");
+    GetOperation file = operation("C:\\a\\x", null);
+
+    GetOperationsUtil.SourcePathsUpdater updater = new GetOperationsUtil.SourcePathsUpdater(Arrays.asList(rename, file));
+    updater.folderRenamed(rename);
+
+    assertEquals("C:\\b\\x", updater.getSourcePath(file));
+    assertEquals("C:\\a\\x", file.getSlocal());
+  }
+
+  public void testLargeTree() {
+    // synthetic tree of 100k items listed children first, would take minutes with pairwise ancestor checks
+    final int foldersCount = 1000;
+    final int filesInFolder = 100;
+    List<GetOperation> operations = new ArrayList<>();
+    for (int folder = foldersCount - 1; folder >= 0; folder--) {
+      String folderPath = "C:\\root\\" + (folder / 10) + "\\" + folder;
+      for (int file = 0; file < filesInFolder; file++) {
+        operations.add(operation(folderPath + "\\" + file, folderPath + "\\" + file));
+      }
+      operations.add(operation(folderPath, folderPath));
+    }
+
+    List<GetOperation> sorted = GetOperationsUtil.sortGetOperations(operations);
+    assertEquals(operations.size(), sorted.size());
+
+    Set<String> seen = new HashSet<>();
+    for (GetOperation operation : sorted) {
+      String path = operation.getSlocal();
+      String parent = path.substring(0, path.lastIndexOf('\\'));
+      if (parent.split("\\\\").length == 4) {
+        assertTrue(path + " goes before its parent", seen.contains(parent));
+      }
+      seen.add(path);
+    }
+  }
+}
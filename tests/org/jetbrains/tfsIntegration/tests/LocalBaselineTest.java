@@ -0,0 +1,243 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.LocalFilePath;
+import com.microsoft.schemas.teamfoundation._2005._06.versioncontrol.clientservices._03.*;
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.ItemPath;
+import org.jetbrains.tfsIntegration.core.tfs.LocalBaseline;
+import org.jetbrains.tfsIntegration.core.tfs.TfsFileUtil;
+
+import javax.activation.DataHandler;
+import javax.mail.util.ByteArrayDataSource;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class LocalBaselineTest extends TestCase {
+
+  private File myDir;
+  private File myStore;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("baseline", null);
+    myStore = new File(myDir, "store");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  private File createFile(String name, String content) throws IOException {
+    File file = new File(myDir, name);
+    FileUtil.writeToFile(file, content);
+    return file;
+  }
+
+  private static FilePath path(File file) {
+    return new LocalFilePath(file.getPath(), file.isDirectory());
+  }
+
+  private List<ItemPath> roots() {
+    return Collections.singletonList(new ItemPath(path(myDir), "$/project"));
+  }
+
+  private static byte[] md5(String content) throws IOException {
+    File file = FileUtil.createTempFile("content", null, true);
+    FileUtil.writeToFile(file, content);
+    return TfsFileUtil.calculateMD5(file);
+  }
+
+  private static ChangeType changeType(ChangeType_type0... types) {
+    ChangeType result = new ChangeType();
+    result.setChangeType_type0(types);
+    return result;
+  }
+
+  private static ExtendedItem extendedItem(File file, int itemId, int version, ItemType type) {
+    ExtendedItem item = new ExtendedItem();
+    item.setLocal(file.getPath());
+    item.setTitem("$/project/" + file.getName());
+    item.setItemid(itemId);
+    item.setLver(version);
+    item.setType(type);
+    item.setChg(changeType(ChangeType_type0.None));
+    return item;
+  }
+
+  private static GetOperation getOperation(File file, int itemId, int version, byte[] hash) {
+    GetOperation operation = new GetOperation();
+    operation.setSlocal(file.getPath());
+    operation.setTlocal(file.getPath());
+    operation.setTitem("$/project/" + file.getName());
+    operation.setItemid(itemId);
+    operation.setSver(version);
+    operation.setType(ItemType.File);
+    operation.setHashValue(hash != null ? new DataHandler(new ByteArrayDataSource(hash, "application/octet-stream")) : null);
+    return operation;
+  }
+
+  private static PendingChange pendingChange(File file, int itemId, ChangeType_type0 type) {
+    PendingChange pendingChange = new PendingChange();
+    pendingChange.setLocal(file.getPath());
+    pendingChange.setItem("$/project/" + file.getName());
+    pendingChange.setItemid(itemId);
+    pendingChange.setType(ItemType.File);
+    pendingChange.setChg(changeType(type));
+    return pendingChange;
+  }
+
+  public void testReconcileTakesHashesFromServer() throws Exception {
+    File unchanged = createFile("unchanged.txt", "server");
+    File edited = createFile("edited.txt", "local edit not pended");
+    Map<Integer, byte[]> hashes = new HashMap<>();
+    hashes.put(1, md5("server"));
+    hashes.put(2, md5("server"));
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    baseline.reconcile(roots(), Arrays.asList(extendedItem(unchanged, 1, 10, ItemType.File), extendedItem(edited, 2, 10, ItemType.File)),
+                       () -> hashes);
+
+    assertTrue(baseline.isReconciled(path(edited), false));
+    assertFalse(baseline.isModified(baseline.get(path(unchanged))));
+    assertTrue(baseline.isModified(baseline.get(path(edited))));
+    List<ItemPath> paths = Arrays.asList(new ItemPath(path(unchanged), "$/project/unchanged.txt"),
+                                         new ItemPath(path(edited), "$/project/edited.txt"));
+    List<ItemPath> unpended = baseline.findUnpendedEdits(paths, Collections.emptyList());
+    assertEquals(1, unpended.size());
+    assertSame(paths.get(1), unpended.get(0));
+  }
+
+  public void testMissingServerHashIsUnknown() throws Exception {
+    File file = createFile("file.txt", "content");
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    baseline.reconcile(roots(), Collections.singletonList(extendedItem(file, 1, 10, ItemType.File)), Collections::emptyMap);
+
+    LocalBaseline.Entry entry = baseline.get(path(file));
+    assertNotNull(entry);
+    assertNull(entry.md5);
+    assertTrue(baseline.isModified(entry));
+  }
+
+  public void testServerNotAskedForKnownVersions() throws Exception {
+    File file = createFile("file.txt", "content");
+    File folder = new File(myDir, "folder");
+    assertTrue(folder.mkdir());
+    List<ExtendedItem> items = Arrays.asList(extendedItem(file, 1, 10, ItemType.File), extendedItem(folder, 2, 10, ItemType.Folder));
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    baseline.reconcile(roots(), items, () -> Collections.singletonMap(1, md5("content")));
+    baseline.reconcile(roots(), items, () -> {
+      throw new AssertionError("hashes of known versions requested again");
+    });
+
+    assertTrue(baseline.get(path(folder)).isDirectory);
+    assertFalse(baseline.isModified(baseline.get(path(file))));
+  }
+
+  public void testReconcileRemovesItemsNotReported() throws Exception {
+    File file = createFile("file.txt", "content");
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    baseline.reconcile(roots(), Collections.singletonList(extendedItem(file, 1, 10, ItemType.File)), Collections::emptyMap);
+    baseline.reconcile(roots(), Collections.emptyList(), Collections::emptyMap);
+
+    assertNull(baseline.get(path(file)));
+    assertTrue(baseline.getEntriesUnder(path(myDir)).isEmpty());
+  }
+
+  public void testUpdateWithHash() throws Exception {
+    File file = createFile("file.txt", "content");
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    baseline.update(Collections.singletonList(getOperation(file, 1, 11, md5("content"))));
+
+    LocalBaseline.Entry entry = baseline.get(path(file));
+    assertEquals(11, entry.version);
+    assertFalse(baseline.isModified(entry));
+
+    FileUtil.writeToFile(file, "modified content");
+    assertTrue(baseline.isModified(baseline.get(path(file))));
+  }
+
+  public void testUpdateWithoutHash() throws Exception {
+    File file = createFile("file.txt", "content");
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    baseline.update(Collections.singletonList(getOperation(file, 1, 11, null)));
+
+    LocalBaseline.Entry entry = baseline.get(path(file));
+    assertNull(entry.md5);
+    assertTrue(baseline.isModified(entry));
+  }
+
+  public void testCheckedIn() throws Exception {
+    File edited = createFile("edited.txt", "checked in");
+    File deleted = createFile("deleted.txt", "content");
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    baseline.update(Arrays.asList(getOperation(edited, 1, 10, md5("old")), getOperation(deleted, 2, 10, md5("content"))));
+    assertTrue(baseline.isModified(baseline.get(path(edited))));
+
+    baseline.checkedIn(Arrays.asList(pendingChange(edited, 1, ChangeType_type0.Edit), pendingChange(deleted, 2, ChangeType_type0.Delete)),
+                       12);
+
+    LocalBaseline.Entry entry = baseline.get(path(edited));
+    assertEquals(12, entry.version);
+    assertFalse(baseline.isModified(entry));
+    assertNull(baseline.get(path(deleted)));
+  }
+
+  public void testSaveAndOpen() throws Exception {
+    File file = createFile("file.txt", "content");
+    File unknown = createFile("unknown.txt", "content");
+    Map<Integer, byte[]> hashes = Collections.singletonMap(1, md5("content"));
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    baseline.reconcile(roots(), Arrays.asList(extendedItem(file, 1, 10, ItemType.File), extendedItem(unknown, 2, 10, ItemType.File)),
+                       () -> hashes);
+    baseline.save();
+    assertTrue(myStore.isFile());
+
+    LocalBaseline reopened = LocalBaseline.open(myStore);
+    assertTrue(reopened.isReconciled(path(file), false));
+    LocalBaseline.Entry entry = reopened.get(path(file));
+    assertEquals(1, entry.itemId);
+    assertEquals(10, entry.version);
+    assertEquals("$/project/file.txt", entry.serverItem);
+    assertTrue(Arrays.equals(hashes.get(1), entry.md5));
+    assertNull(reopened.get(path(unknown)).md5);
+    assertEquals(2, reopened.getEntriesUnder(path(myDir)).size());
+  }
+
+  public void testOldFormatIsDiscarded() throws Exception {
+    // version 1 stored hashes of local files
+    FileUtil.writeToFile(myStore, new byte[]{0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0});
+
+    LocalBaseline baseline = LocalBaseline.open(myStore);
+    assertFalse(baseline.isReconciled(path(myDir), true));
+    assertTrue(baseline.getEntriesUnder(path(myDir)).isEmpty());
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2000-2008 JetBrains s.r.o.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.jetbrains.tfsIntegration.tests;
+
+import junit.framework.TestCase;
+import org.jetbrains.tfsIntegration.core.tfs.workitems.WorkItemIds;
+
+import java.util.Arrays;
+
+public class WorkItemIdsTest extends TestCase {
+
+  public void testSingleIdsAndRanges() {
+    WorkItemIds ids = new WorkItemIds(new int[]{10, 3, 20}, new int[]{12, 3, 20});
+    assertEquals(5, ids.size());
+    assertTrue(Arrays.equals(new int[]{3, 10, 11, 12, 20}, ids.toArray(0, ids.size())));
+  }
+
+  public void testOverlappingRangesMerged() {
+    WorkItemIds ids = new WorkItemIds(new int[]{5, 1, 4}, new int[]{8, 4, 6});
+    assertEquals(8, ids.size());
+    assertTrue(Arrays.equals(new int[]{1, 2, 3, 4, 5, 6, 7, 8}, ids.toArray(0, ids.size())));
+  }
+
+  public void testWindow() {
+    WorkItemIds ids = new WorkItemIds(new int[]{1, 100}, new int[]{50, 149});
+    assertEquals(100, ids.size());
+    assertTrue(Arrays.equals(new int[]{49, 50, 100, 101}, ids.toArray(48, 52)));
+    assertEquals(149, ids.get(99));
+  }
+
+  public void testLargeRangeIsNotExpanded() {
+    WorkItemIds ids = new WorkItemIds(new int[]{1}, new int[]{10000000});
+    assertEquals(10000000, ids.size());
+    assertEquals(5000001, ids.get(5000000));
+  }
+
+  public void testOutOfBounds() {
+    try {
+      WorkItemIds.EMPTY.get(0);
+      fail();
+    }
+    catch (IndexOutOfBoundsException ignored) {
+    }
+  }
+}